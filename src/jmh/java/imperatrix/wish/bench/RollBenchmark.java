@@ -0,0 +1,164 @@
+package imperatrix.wish.bench;
+
+import imperatrix.wish.cache.CrateCache;
+import imperatrix.wish.struct.GachaPlayer;
+import imperatrix.wish.struct.crate.Crate;
+import imperatrix.wish.struct.crate.PullResult;
+import imperatrix.wish.struct.reward.Reward;
+import imperatrix.wish.struct.reward.RewardTier;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the roll engine. Crates are built in memory, no server is needed.
+ * <p>
+ * Usage: {@code mvn -Pbenchmark test-compile exec:exec}, extra JMH options go in {@code -Djmh.args="..."}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RollBenchmark {
+    private static final String CRATES = """
+            Crates:
+              Standard:
+                UUID: 528559cd-9487-4125-a244-b6ac47f4d27c
+                Reward-Tiers:
+                  three-star:
+                    Chance: 94.3
+                    Rewards:
+                      Refined-Blade: {Chance: 33.33}
+                      Refined-Pickaxe: {Chance: 33.33}
+                      IG-Spawner: {Chance: 33.34}
+                  four-star:
+                    Pity: true
+                    Pity-Limit: 10
+                    Chance: 5.1
+                    Rewards:
+                      Masters-Blade: {Chance: 33.33}
+                      Masters-Pickaxe: {Chance: 33.33}
+                      Spawner-Pack: {Chance: 33.34}
+                  five-star:
+                    Pity: true
+                    Pity-Limit: 90
+                    Soft-Pity-Start: 74
+                    Soft-Pity-Increase: 6
+                    Chance: 0.6
+                    Rewards:
+                      Masters-Set: {Chance: 50}
+                      Spawner-Pack: {Chance: 50}
+              Limited:
+                UUID: 3bd2f4d8-2559-4993-97aa-eea40ffd84ca
+                Is-Limited-5050-Banner: true
+                Five-Star-Tier-Name: five-star
+                Featured-5Star-Reward-Names: [Lumine-Sword]
+                Reward-Tiers:
+                  five-star:
+                    Chance: 100
+                    Rewards:
+                      Lumine-Sword: {Chance: 25}
+                      Standard-A: {Chance: 25}
+                      Standard-B: {Chance: 25}
+                      Standard-C: {Chance: 25}
+            """;
+
+    private Crate standardCrate;
+    private Crate limitedCrate;
+    private RewardTier rewardTier;
+    private GachaPlayer gachaPlayer;
+    private SplittableRandom random;
+    private int[] limitedPity;
+    private PullResult limitedResult;
+    private int pityHeadroom; // Increases before the lowest pity limit caps pity
+
+    @Setup
+    public void setup() throws InvalidConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        CrateCache crateCache = new CrateCache();
+
+        config.loadFromString(CRATES);
+        crateCache.loadFrom(config);
+        standardCrate = crateCache.getCrate("Standard").orElseThrow();
+        limitedCrate = crateCache.getCrate("Limited").orElseThrow();
+        rewardTier = standardCrate.getRewardTier("three-star").orElseThrow();
+        gachaPlayer = new GachaPlayer(UUID.randomUUID());
+        random = new SplittableRandom(42);
+        limitedPity = new int[limitedCrate.getRewardTierCount()];
+        limitedResult = new PullResult(limitedCrate, 1);
+        pityHeadroom = standardCrate.getRewardTiers().stream()
+                .filter(RewardTier::isPityEnabled)
+                .mapToInt((tier) -> tier.getPityLimit() - 1)
+                .min().orElseThrow();
+    }
+
+    @Benchmark
+    public RewardTier generateRewardTier() {
+        return standardCrate.generateRewardTier(gachaPlayer);
+    }
+
+    @Benchmark
+    public Reward generateReward() {
+        return rewardTier.generateReward();
+    }
+
+    /**
+     * Every pull of the limited crate lands in its 50/50 tier
+     */
+    @Benchmark
+    public int roll5050() {
+        limitedResult.clear();
+        limitedCrate.roll(limitedPity, 1, random, limitedResult);
+        return limitedResult.getRewardIndex(0);
+    }
+
+    /**
+     * One pity increase. Pity is capped below the limit, so it is reset once every pityHeadroom calls to keep every
+     * call increasing it. The reset is measured too, spread over those calls.
+     */
+    @Benchmark
+    public GachaPlayer increasePity(FreshPlayer freshPlayer) {
+        if (++freshPlayer.increases == pityHeadroom) {
+            freshPlayer.increases = 0;
+            freshPlayer.resetPity(standardCrate);
+        }
+        freshPlayer.gachaPlayer.increasePity(standardCrate, 1);
+        return freshPlayer.gachaPlayer;
+    }
+
+    /**
+     * A full 10-pull of a player starting from zero pity, reading and writing back the player's pity. Resetting
+     * pity costs a few writes next to ten rolls, so it is measured along with them.
+     */
+    @Benchmark
+    public PullResult rollBatch10(FreshPlayer freshPlayer) {
+        freshPlayer.resetPity(standardCrate);
+        return standardCrate.rollBatch(freshPlayer.gachaPlayer, 10, random);
+    }
+
+    /**
+     * Player of a single benchmark, so pity changed by one benchmark never leaks into another. Benchmarks reset
+     * its pity themselves, a setup per invocation would cost more than the calls it measures.
+     */
+    @State(Scope.Thread)
+    public static class FreshPlayer {
+        private final GachaPlayer gachaPlayer = new GachaPlayer(UUID.randomUUID());
+        private int increases = 0; // Calls of increasePity since pity was last reset
+
+        @Setup(Level.Iteration)
+        public void setup(RollBenchmark benchmark) {
+            increases = 0;
+            resetPity(benchmark.standardCrate);
+        }
+
+        private void resetPity(Crate crate) {
+            crate.getRewardTiers().forEach((tier) -> gachaPlayer.resetPity(crate, tier));
+        }
+    }
+}
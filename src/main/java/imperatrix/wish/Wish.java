@@ -3,6 +3,7 @@ package imperatrix.wish;
 import imperatrix.wish.cache.*;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import imperatrix.wish.commands.*;
+import imperatrix.wish.delivery.RewardDeliveryQueue;
 import imperatrix.wish.file.CustomFile;
 import imperatrix.wish.file.FileManager;
 import imperatrix.wish.lang.Lang;
@@ -14,18 +15,36 @@ import imperatrix.wish.menu.MenuManager;
 import imperatrix.wish.menu.menus.CrateOpenMenu;
 import imperatrix.wish.menu.menus.PullMenu;
 import imperatrix.wish.menu.menus.RewardsMenu;
+import imperatrix.wish.storage.BinaryPlayerStorage;
+import imperatrix.wish.storage.MappedPlayerStorage;
+import imperatrix.wish.storage.PlayerDataTransfer;
+import imperatrix.wish.storage.PlayerStorage;
+import imperatrix.wish.storage.ShardedPlayerStorage;
+import imperatrix.wish.storage.SqlitePlayerStorage;
+import imperatrix.wish.storage.YamlPlayerStorage;
+import imperatrix.wish.struct.PlayerSnapshot;
 import imperatrix.wish.struct.WishPlaceholderExpansion;
 
 import org.bukkit.Bukkit;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
 public class Wish extends JavaPlugin {
     private final CrateCache crateCache = new CrateCache();
     private final PlayerCache playerCache = new PlayerCache(this);
     private final FileManager fileManager = new FileManager(this);
     private final MenuManager menuManager = new MenuManager();
     private final SessionManager sessionManager = new SessionManager();
+    private final RngProvider rngProvider = new RngProvider(this);
+    private final RewardDeliveryQueue deliveryQueue = new RewardDeliveryQueue(this);
+    private final PlayerDataTransfer playerDataTransfer = new PlayerDataTransfer(this);
+    private final PlaceholderCache placeholderCache = new PlaceholderCache(this);
 
     @Override
     public void onEnable() {
@@ -33,6 +52,9 @@ public class Wish extends JavaPlugin {
         registerCommands();
         registerListeners();
         registerMenus();
+        deliveryQueue.start();
+        playerCache.startAutosave();
+        playerCache.addChangeListener(placeholderCache);
 
         // Înregistrarea expansiunii PlaceholderAPI
         if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
@@ -44,8 +66,11 @@ public class Wish extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        playerCache.saveTo(fileManager.getFile("data"));
+        deliveryQueue.stop();
+        playerDataTransfer.shutdown();
+        playerCache.shutdown();
         crateCache.saveTo(fileManager.getFile("crates"));
+        fileManager.shutdown();
     }
 
     /**
@@ -57,6 +82,15 @@ public class Wish extends JavaPlugin {
         return crateCache;
     }
 
+    /**
+     * Retrieve the reward delivery queue, used for handing out rewards without overrunning the tick
+     *
+     * @return RewardDeliveryQueue
+     */
+    public RewardDeliveryQueue getDeliveryQueue() {
+        return deliveryQueue;
+    }
+
     /**
      * Retrieve the menu manager, used for tracking active menus and finding menus
      *
@@ -66,6 +100,24 @@ public class Wish extends JavaPlugin {
         return menuManager;
     }
 
+    /**
+     * Retrieve the player data transfer, used for exporting and importing player data
+     *
+     * @return PlayerDataTransfer
+     */
+    public PlayerDataTransfer getPlayerDataTransfer() {
+        return playerDataTransfer;
+    }
+
+    /**
+     * Retrieve the placeholder cache, used for serving PlaceholderAPI values
+     *
+     * @return PlaceholderCache
+     */
+    public PlaceholderCache getPlaceholderCache() {
+        return placeholderCache;
+    }
+
     /**
      * Retrieve the player cache, used for retrieving GachaPlayers
      *
@@ -75,6 +127,15 @@ public class Wish extends JavaPlugin {
         return playerCache;
     }
 
+    /**
+     * Retrieve the rng provider, used for handing out replayable random streams to crate sessions
+     *
+     * @return RngProvider
+     */
+    public RngProvider getRngProvider() {
+        return rngProvider;
+    }
+
     /**
      * Retrieve the session manager, used for holding info regarding active crates
      *
@@ -89,7 +150,8 @@ public class Wish extends JavaPlugin {
         CrateCommandExecutor commandExecutor = new CrateCommandExecutor();
 
         commandExecutor.addCommands(new CmdSet(this), new CmdRemove(this), new CmdGive(this), new CmdTake(this),
-                new CmdGiveAll(this), new CmdList(this), new CmdCheck(this));
+                new CmdGiveAll(this), new CmdList(this), new CmdCheck(this), new CmdQueue(this),
+                new CmdExport(this), new CmdImport(this));
         if (crateCommand != null) {
             crateCommand.setExecutor(commandExecutor);
         }
@@ -108,12 +170,58 @@ public class Wish extends JavaPlugin {
         menusFile.saveDefaultConfig();
 
         GachaConfig.load(getConfig());
+        rngProvider.load(getConfig());
         GachaConfig.validateConfig(ConfigType.MENUS, menusFile);
         crateCache.loadFrom(cratesFile.getConfig());
-        playerCache.setFile(dataFile.getConfig());
+        playerCache.setStorage(createPlayerStorage(dataFile));
         Lang.setFileConfiguration(langFile.getConfig());
     }
 
+    private PlayerStorage createPlayerStorage(CustomFile dataFile) {
+        PlayerStorage storage = null;
+
+        try {
+            switch (GachaConfig.STORAGE_TYPE) {
+                case BINARY -> storage = new BinaryPlayerStorage(new File(getDataFolder(), "data.bin"));
+                case FILES -> storage = new ShardedPlayerStorage(new File(getDataFolder(), "data"));
+                case MAPPED -> storage = new MappedPlayerStorage(new File(getDataFolder(), "data.mmap"));
+                case SQLITE -> storage = new SqlitePlayerStorage(new File(getDataFolder(), "data.db"));
+            }
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "[Wish] Could not open the " + GachaConfig.STORAGE_TYPE + " player storage, falling back to data.yml", e);
+        }
+
+        if (storage == null) {
+            return new YamlPlayerStorage(dataFile);
+        }
+        migrateDataFile(dataFile, storage);
+        return storage;
+    }
+
+    /**
+     * Copy every player in data.yml into a new, still empty storage. data.yml itself is left alone.
+     */
+    private void migrateDataFile(CustomFile dataFile, PlayerStorage storage) {
+        try {
+            // Only parse data.yml when there is something to migrate, so startup does not depend on its size
+            if (dataFile.getFile().length() == 0 || !storage.isEmpty()) {
+                return;
+            }
+            List<PlayerSnapshot> players = new ArrayList<>();
+
+            new YamlPlayerStorage(dataFile).forEach(players::add);
+            for (int i = 0; i < players.size(); i += 1000) {
+                storage.saveBatch(players.subList(i, Math.min(i + 1000, players.size())));
+            }
+
+            if (!players.isEmpty()) {
+                getLogger().info("[Wish] Migrated " + players.size() + " players from data.yml to " + GachaConfig.STORAGE_TYPE + " storage.");
+            }
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "[Wish] Could not migrate data.yml to " + GachaConfig.STORAGE_TYPE + " storage", e);
+        }
+    }
+
     private void registerListeners() {
         Bukkit.getPluginManager().registerEvents(new PlayerListener(this), this);
         Bukkit.getPluginManager().registerEvents(new CrateListener(this), this);
@@ -2,14 +2,35 @@ package imperatrix.wish.cache;
 
 import imperatrix.wish.file.CustomFile;
 import imperatrix.wish.struct.crate.Crate;
+import imperatrix.wish.util.LongHashMap;
+import imperatrix.wish.util.Utils;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class CrateCache {
     private final List<Crate> crates = new ArrayList<>();
+    private final LongHashMap<IndexedLocation> locationIndex = new LongHashMap<>(); // Block position to crate
+    private volatile Map<String, Crate> cratesByName = Map.of(); // Lower-cased name to crate, replaced whole on change
+    private volatile Map<UUID, Crate> cratesByUuid = Map.of();
+    private final HashMap<UUID, LongHashMap<Integer>> crateChunks = new HashMap<>(); // Per world, chunk key to crate location count
+
+    /**
+     * Add a crate location and index it, unless a crate is already placed there
+     *
+     * @param crate The crate placed at the location
+     * @param location The location to add
+     */
+    public void addLocation(Crate crate, Location location) {
+        if (index(crate, location)) {
+            crate.addLocation(location);
+        }
+    }
 
     /**
      * Retrieve a crate based on a location
@@ -18,7 +39,15 @@ public class CrateCache {
      * @return Optional Crate
      */
     public Optional<Crate> getCrate(Location location) {
-        return crates.stream().filter((c) -> c.isCrateLocation(location)).findFirst();
+        IndexedLocation indexedLocation = locationIndex.get(blockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+
+        // Entries of a position hold the same block in different worlds
+        for (; indexedLocation != null; indexedLocation = indexedLocation.next()) {
+            if (Objects.equals(indexedLocation.world(), location.getWorld())) {
+                return Optional.of(indexedLocation.crate());
+            }
+        }
+        return Optional.empty();
     }
 
     /**
@@ -28,7 +57,7 @@ public class CrateCache {
      * @return Optional Crate
      */
     public Optional<Crate> getCrate(String name) {
-        return crates.stream().filter((c) -> c.getName().equalsIgnoreCase(name)).findFirst();
+        return Optional.ofNullable(cratesByName.get(name.toLowerCase(Locale.ROOT)));
     }
 
     /**
@@ -38,20 +67,21 @@ public class CrateCache {
      * @return Optional Crate
      */
     public Optional<Crate> getCrate(UUID uuid) {
-        return crates.stream().filter((c) -> c.getUuid().equals(uuid)).findFirst();
+        return Optional.ofNullable(cratesByUuid.get(uuid));
     }
 
     /**
      * Retrieve all crates
      *
-     * @return List containing all loaded crates
+     * @return Unmodifiable list containing all loaded crates, changes go through loadFrom so the indexes follow
      */
     public List<Crate> getCrates() {
-        return crates;
+        return Collections.unmodifiableList(crates);
     }
 
     /**
-     * Load all crates from a config file
+     * Load all crates from a config file. Crates are parsed in parallel, their rewards, items and probability
+     * tables do not depend on each other, then published in config order on the calling thread.
      *
      * @param config The config to load settings from
      */
@@ -61,14 +91,94 @@ public class CrateCache {
         if (cratesSection == null) {
             return;
         }
+        List<String> crateNames = new ArrayList<>(cratesSection.getKeys(false));
+        List<ConfigurationSection> crateSections = new ArrayList<>(crateNames.size());
 
-        for (String crateName : cratesSection.getKeys(false)) {
-            Crate crate = new Crate(crateName);
+        for (String crateName : crateNames) {
             ConfigurationSection crateSection = cratesSection.getConfigurationSection(crateName);
 
             assert crateSection != null;
-            crate.loadFrom(crateSection);
-            crates.add(crate);
+            crateSections.add(crateSection);
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(crateNames.size(), Runtime.getRuntime().availableProcessors())));
+        List<ForkJoinTask<Crate>> parsed = new ArrayList<>(crateNames.size());
+
+        try {
+            for (int i = 0; i < crateNames.size(); i++) {
+                Crate crate = new Crate(crateNames.get(i));
+                ConfigurationSection crateSection = crateSections.get(i);
+
+                parsed.add(pool.submit(() -> {
+                    crate.loadFrom(crateSection);
+                    return crate;
+                }));
+            }
+
+            for (int i = 0; i < parsed.size(); i++) {
+                Crate crate = parsed.get(i).join();
+
+                crate.loadLocations(crateSections.get(i));
+                crate.setIndex(crates.size());
+                crates.add(crate);
+
+                for (Location location : new ArrayList<>(crate.getCrateLocations())) {
+                    if (!index(crate, location)) {
+                        Utils.getLogger().warning("[Wish] Crate " + crate.getName() + " has a location already used by crate "
+                                + getCrate(location).map(Crate::getName).orElse("?") + " (" + location.getBlockX() + " " + location.getBlockY() + " "
+                                + location.getBlockZ() + "), dropping it.");
+                        crate.removeLocation(location);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        rebuildIndexes();
+    }
+
+    /**
+     * Check whether a chunk holds at least one crate location. Cheap enough to run before anything else on every
+     * block event.
+     *
+     * @param world The world of the chunk
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return True if a crate may be in the chunk
+     */
+    public boolean hasCrateInChunk(World world, int chunkX, int chunkZ) {
+        LongHashMap<Integer> chunks = crateChunks.get(world.getUID());
+        return chunks != null && chunks.get(chunkKey(chunkX, chunkZ)) != null;
+    }
+
+    /**
+     * Remove a crate location and its index entry. Other crates at the same position are left alone.
+     *
+     * @param crate The crate placed at the location
+     * @param location The location to remove
+     */
+    public void removeLocation(Crate crate, Location location) {
+        crate.removeLocation(location);
+        long key = blockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        IndexedLocation remaining = null;
+
+        int removed = 0;
+
+        for (IndexedLocation indexedLocation = locationIndex.get(key); indexedLocation != null; indexedLocation = indexedLocation.next()) {
+            if (indexedLocation.crate() == crate && Objects.equals(indexedLocation.world(), location.getWorld())) {
+                removed++;
+            } else {
+                remaining = new IndexedLocation(indexedLocation.world(), indexedLocation.crate(), remaining);
+            }
+        }
+
+        if (removed > 0 && location.getWorld() != null) {
+            countChunk(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, -removed);
+        }
+
+        if (remaining == null) {
+            locationIndex.remove(key);
+        } else {
+            locationIndex.put(key, remaining);
         }
     }
 
@@ -94,4 +204,65 @@ public class CrateCache {
 
         customFile.saveConfig();
     }
+
+    // Same layout as Minecraft's own block positions: 26 bits x, 26 bits z, 12 bits y, which uses every bit, so
+    // the world is checked on a hit instead of being packed in
+    private static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    // Readers on other threads see either the old or the new indexes, never a half built one
+    private void rebuildIndexes() {
+        HashMap<String, Crate> byName = new HashMap<>();
+        HashMap<UUID, Crate> byUuid = new HashMap<>();
+
+        // The first crate wins on duplicates, the same as the old linear search
+        for (Crate crate : crates) {
+            byName.putIfAbsent(crate.getName().toLowerCase(Locale.ROOT), crate);
+            byUuid.putIfAbsent(crate.getUuid(), crate);
+        }
+        cratesByName = Map.copyOf(byName);
+        cratesByUuid = Map.copyOf(byUuid);
+    }
+
+    private void countChunk(World world, int chunkX, int chunkZ, int change) {
+        LongHashMap<Integer> chunks = crateChunks.computeIfAbsent(world.getUID(), (u) -> new LongHashMap<>());
+        long key = chunkKey(chunkX, chunkZ);
+        Integer count = chunks.get(key);
+        int newCount = (count == null ? 0 : count) + change;
+
+        if (newCount > 0) {
+            chunks.put(key, newCount);
+        } else {
+            chunks.remove(key);
+        }
+    }
+
+    /**
+     * Index a crate location
+     *
+     * @return False if a crate is already indexed at the position in the same world, nothing is indexed then
+     */
+    private boolean index(Crate crate, Location location) {
+        if (getCrate(location).isPresent()) {
+            return false;
+        }
+        long key = blockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        locationIndex.put(key, new IndexedLocation(location.getWorld(), crate, locationIndex.get(key)));
+
+        if (location.getWorld() != null) {
+            countChunk(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Crate placed at an indexed block position, chained to other crates at the same position in other worlds
+     */
+    private record IndexedLocation(World world, Crate crate, IndexedLocation next) {
+    }
 }
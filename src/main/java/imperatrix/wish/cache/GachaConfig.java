@@ -1,13 +1,38 @@
 package imperatrix.wish.cache;
 
 import imperatrix.wish.file.CustomFile;
+import imperatrix.wish.storage.StorageType;
+import imperatrix.wish.util.Utils;
 import org.bukkit.configuration.file.FileConfiguration;
 
+import java.util.logging.Level;
+
 public class GachaConfig {
     public static int MAX_PULLS = 20;
+    public static boolean LOG_RNG_STREAMS = false;
+    public static long DELIVERY_BUDGET_NANOS = 2_000_000L;
+    public static long AUTOSAVE_INTERVAL_SECONDS = 300L;
+    public static long JOURNAL_COMMIT_MILLIS = 50L;
+    public static StorageType STORAGE_TYPE = StorageType.YAML;
+    public static long CACHE_EXPIRY_SECONDS = 600L;
+    public static int CACHE_MAX_SIZE = 1000;
+    public static boolean CACHE_PIN_ONLINE = true;
 
     public static void load(FileConfiguration fileConfiguration) {
         GachaConfig.MAX_PULLS = fileConfiguration.getInt("Max-Pulls", 20);
+        GachaConfig.LOG_RNG_STREAMS = fileConfiguration.getBoolean("Log-Rng-Streams", false);
+        GachaConfig.DELIVERY_BUDGET_NANOS = Math.max(0L, fileConfiguration.getLong("Delivery-Budget-Nanos", 2_000_000L));
+        GachaConfig.AUTOSAVE_INTERVAL_SECONDS = Math.max(0L, fileConfiguration.getLong("Autosave-Interval", 300L));
+        GachaConfig.JOURNAL_COMMIT_MILLIS = Math.max(1L, fileConfiguration.getLong("Journal-Commit-Millis", 50L));
+        GachaConfig.CACHE_EXPIRY_SECONDS = Math.max(0L, fileConfiguration.getLong("Cache-Expiry", 600L));
+        GachaConfig.CACHE_MAX_SIZE = Math.max(0, fileConfiguration.getInt("Cache-Max-Size", 1000));
+        GachaConfig.CACHE_PIN_ONLINE = fileConfiguration.getBoolean("Cache-Pin-Online", true);
+        try {
+            GachaConfig.STORAGE_TYPE = StorageType.valueOf(fileConfiguration.getString("Storage-Type", "YAML").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            GachaConfig.STORAGE_TYPE = StorageType.YAML;
+            Utils.getLogger().log(Level.WARNING, "[Wish] Invalid Storage-Type in config.yml. Defaulting to YAML.");
+        }
     }
 
     public static void validateConfig(ConfigType configType, CustomFile customFile) {
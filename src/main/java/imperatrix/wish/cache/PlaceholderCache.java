@@ -0,0 +1,228 @@
+package imperatrix.wish.cache;
+
+import imperatrix.wish.Wish;
+import imperatrix.wish.struct.GachaPlayer;
+import imperatrix.wish.struct.crate.Crate;
+import imperatrix.wish.struct.reward.RewardTier;
+import org.bukkit.Bukkit;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved placeholder values per player. Scoreboards ask for the same values several times a second, so a value
+ * is only computed again after the player's pulls, pity or guarantee changed. Identifiers are parsed once and
+ * shared between players.
+ * <p>
+ * Players are only read on the main thread, values are published from there. A request from another thread gets
+ * the last published value, or a fallback, and has the value resolved on the next tick.
+ */
+public class PlaceholderCache implements GachaPlayer.ChangeListener {
+    private static final int MAX_PARSED_IDENTIFIERS = 1024; // Identifiers come from configs, this only guards against junk
+    private static final Placeholder UNKNOWN = new Placeholder(Type.UNKNOWN, null, null, null);
+
+    private final Wish plugin;
+    private final Map<String, Placeholder> parsedIdentifiers = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<String, String>> playerValues = new ConcurrentHashMap<>();
+    private final Set<UUID> stalePlayers = ConcurrentHashMap.newKeySet(); // Changed since their values were published
+    private final Set<Request> pendingRequests = ConcurrentHashMap.newKeySet(); // Scheduled to be resolved on the main thread
+
+    public PlaceholderCache(Wish plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Retrieve the value of a placeholder for a player
+     *
+     * @param uuid The UUID of the player
+     * @param identifier The placeholder without the wish_ prefix
+     * @return The value, or null if the identifier is not a Wish placeholder
+     */
+    public String getValue(UUID uuid, String identifier) {
+        Map<String, String> values = playerValues.get(uuid);
+        String value = values == null ? null : values.get(identifier);
+
+        if (value != null && !stalePlayers.contains(uuid)) {
+            return value;
+        }
+        Placeholder placeholder = parse(identifier);
+
+        if (placeholder.type() == Type.UNKNOWN || placeholder.type() == Type.TEXT) {
+            return placeholder.text();
+        }
+
+        if (Bukkit.isPrimaryThread()) {
+            return publish(uuid, identifier, placeholder);
+        }
+        Request request = new Request(uuid, identifier);
+
+        // Tasks cannot be scheduled while the plugin is disabling
+        if (plugin.isEnabled() && pendingRequests.add(request)) {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                pendingRequests.remove(request);
+                publish(uuid, identifier, placeholder);
+            });
+        }
+        return value != null ? value : fallback(placeholder);
+    }
+
+    /**
+     * Forget every value of a player, e.g. when they leave
+     *
+     * @param uuid The UUID of the player
+     */
+    public void invalidate(UUID uuid) {
+        playerValues.remove(uuid);
+        stalePlayers.remove(uuid);
+    }
+
+    @Override
+    public void onGuaranteeChanged(GachaPlayer gachaPlayer, Crate crate, boolean guaranteed) {
+        markStale(gachaPlayer);
+    }
+
+    @Override
+    public void onPityChanged(GachaPlayer gachaPlayer, Crate crate, RewardTier rewardTier, int pity) {
+        markStale(gachaPlayer);
+    }
+
+    @Override
+    public void onPullsChanged(GachaPlayer gachaPlayer, Crate crate, int pulls) {
+        markStale(gachaPlayer);
+    }
+
+    @Override
+    public void onRngCounterChanged(GachaPlayer gachaPlayer, long rngCounter) {
+        // Not shown by any placeholder
+    }
+
+    @Override
+    public void onReplaced(GachaPlayer gachaPlayer) {
+        markStale(gachaPlayer);
+    }
+
+    // Published values stay readable until they are replaced, a pull changes pity many times in a row
+    private void markStale(GachaPlayer gachaPlayer) {
+        if (playerValues.containsKey(gachaPlayer.getUuid())) {
+            stalePlayers.add(gachaPlayer.getUuid());
+        }
+    }
+
+    /**
+     * Resolve a value and publish it, on the main thread. If the player changed since their values were
+     * published, every one of them is resolved again so other threads stop seeing outdated values.
+     */
+    private String publish(UUID uuid, String identifier, Placeholder placeholder) {
+        // Online players may have been evicted when they are not pinned, they are loaded back. Loading offline
+        // players just for a placeholder would fill the cache with them.
+        GachaPlayer gachaPlayer = Bukkit.getPlayer(uuid) != null
+                ? plugin.getPlayerCache().getPlayer(uuid)
+                : plugin.getPlayerCache().getCachedPlayer(uuid);
+
+        if (gachaPlayer == null) {
+            return fallback(placeholder);
+        }
+        Map<String, String> values = playerValues.computeIfAbsent(uuid, (u) -> new ConcurrentHashMap<>());
+
+        if (stalePlayers.remove(uuid)) {
+            values.replaceAll((id, oldValue) -> resolve(parse(id), gachaPlayer));
+        }
+        String value = resolve(placeholder, gachaPlayer);
+        values.put(identifier, value);
+        return value;
+    }
+
+    private Placeholder parse(String identifier) {
+        Placeholder placeholder = parsedIdentifiers.get(identifier);
+
+        if (placeholder == null) {
+            if (parsedIdentifiers.size() >= MAX_PARSED_IDENTIFIERS) {
+                parsedIdentifiers.clear();
+            }
+            placeholder = parseIdentifier(identifier);
+            parsedIdentifiers.put(identifier, placeholder);
+        }
+        return placeholder;
+    }
+
+    private Placeholder parseIdentifier(String identifier) {
+        if (identifier.equals("total_pulls")) {
+            return new Placeholder(Type.TOTAL_PULLS, null, null, null);
+        }
+
+        if (identifier.startsWith("pulls_")) {
+            Optional<Crate> crate = plugin.getCrateCache().getCrate(identifier.substring("pulls_".length()));
+            return crate.map((c) -> new Placeholder(Type.PULLS, c, null, null)).orElseGet(() -> text("Invalid crate name"));
+        }
+
+        if (identifier.startsWith("guarantee_")) {
+            Optional<Crate> crate = plugin.getCrateCache().getCrate(identifier.substring("guarantee_".length()));
+            return crate.map((c) -> new Placeholder(Type.GUARANTEE, c, null, null)).orElseGet(() -> text("Invalid crate name"));
+        }
+
+        if (identifier.startsWith("pity_")) {
+            String crateAndTier = identifier.substring("pity_".length());
+
+            // Crate and tier names may both hold underscores, try every split
+            for (int split = crateAndTier.indexOf('_'); split != -1; split = crateAndTier.indexOf('_', split + 1)) {
+                String tierName = crateAndTier.substring(split + 1);
+                Optional<Crate> crate = plugin.getCrateCache().getCrate(crateAndTier.substring(0, split));
+                Optional<RewardTier> rewardTier = crate.flatMap((c) -> c.getRewardTier(tierName));
+
+                if (rewardTier.isPresent()) {
+                    return new Placeholder(Type.PITY, crate.get(), rewardTier.get(), null);
+                }
+            }
+            return text("Invalid crate or tier name");
+        }
+        return UNKNOWN;
+    }
+
+    private String resolve(Placeholder placeholder, GachaPlayer gachaPlayer) {
+        return switch (placeholder.type()) {
+            case GUARANTEE -> String.valueOf(gachaPlayer.isNext5StarGuaranteedFeatured(placeholder.crate()));
+            case PITY -> String.valueOf(gachaPlayer.getPity(placeholder.crate(), placeholder.rewardTier()));
+            case PULLS -> String.valueOf(gachaPlayer.getAvailablePulls(placeholder.crate()));
+            case TEXT -> placeholder.text();
+            case TOTAL_PULLS -> {
+                int total = 0;
+
+                for (Crate crate : plugin.getCrateCache().getCrates()) {
+                    total += gachaPlayer.getAvailablePulls(crate);
+                }
+                yield String.valueOf(total);
+            }
+            case UNKNOWN -> null;
+        };
+    }
+
+    // What a player without any state would show
+    private static String fallback(Placeholder placeholder) {
+        return switch (placeholder.type()) {
+            case GUARANTEE -> "false";
+            case PITY, PULLS, TOTAL_PULLS -> "0";
+            case TEXT -> placeholder.text();
+            case UNKNOWN -> null;
+        };
+    }
+
+    private static Placeholder text(String text) {
+        return new Placeholder(Type.TEXT, null, null, text);
+    }
+
+    private enum Type {
+        GUARANTEE, PITY, PULLS, TEXT, TOTAL_PULLS, UNKNOWN
+    }
+
+    /**
+     * A parsed identifier, holding the crate and tier it refers to
+     */
+    private record Placeholder(Type type, Crate crate, RewardTier rewardTier, String text) {
+    }
+
+    private record Request(UUID uuid, String identifier) {
+    }
+}
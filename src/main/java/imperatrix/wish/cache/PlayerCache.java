@@ -1,22 +1,71 @@
 package imperatrix.wish.cache;
 
 import imperatrix.wish.Wish;
-import imperatrix.wish.file.CustomFile;
+import imperatrix.wish.file.PlayerJournal;
+import imperatrix.wish.storage.PlayerStorage;
 import imperatrix.wish.struct.crate.Crate;
 import imperatrix.wish.struct.GachaPlayer;
+import imperatrix.wish.struct.PlayerSnapshot;
 import imperatrix.wish.struct.reward.RewardTier;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.Bukkit;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
+/**
+ * Players loaded from the storage. Placeholders are requested from other threads, so the cache itself is guarded
+ * by this. Players are only loaded, changed and saved on the main thread.
+ */
 public class PlayerCache {
-    private final HashMap<UUID, GachaPlayer> playerCache = new HashMap<>();
+    private final LinkedHashMap<UUID, GachaPlayer> playerCache = new LinkedHashMap<>(16, 0.75f, true); // Least recently used first, guarded by this
+    private final HashMap<UUID, Long> lastAccess = new HashMap<>(); // Guarded by this
+    private final Map<UUID, PlayerSnapshot> writeBack = new ConcurrentHashMap<>(); // Evicted players not saved yet
     private final Wish plugin;
-    private FileConfiguration fileConfiguration; // This is the data.yml configuration
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor((r) -> new Thread(r, "Wish-Save"));
+    private final AtomicInteger failedWrites = new AtomicInteger(); // Bumped once a failed batch is back in writeBack
+    private PlayerStorage storage;
+    private PlayerJournal journal; // Changes made since the last save, replayed on top of the storage at startup
+    private long firstUnreplayedSegment = Long.MAX_VALUE; // Segments from here on are never deleted, replay failed
+    private final List<GachaPlayer.ChangeListener> changeListeners = new ArrayList<>(); // Told about changes after the journal
+    private final GachaPlayer.ChangeListener changeListener = new GachaPlayer.ChangeListener() {
+        @Override
+        public void onGuaranteeChanged(GachaPlayer gachaPlayer, Crate crate, boolean guaranteed) {
+            journal.appendGuarantee(gachaPlayer.getUuid(), crate.getUuid(), guaranteed);
+            changeListeners.forEach((listener) -> listener.onGuaranteeChanged(gachaPlayer, crate, guaranteed));
+        }
+
+        @Override
+        public void onPityChanged(GachaPlayer gachaPlayer, Crate crate, RewardTier rewardTier, int pity) {
+            journal.appendPity(gachaPlayer.getUuid(), crate.getUuid(), rewardTier.getName(), pity);
+            changeListeners.forEach((listener) -> listener.onPityChanged(gachaPlayer, crate, rewardTier, pity));
+        }
+
+        @Override
+        public void onPullsChanged(GachaPlayer gachaPlayer, Crate crate, int pulls) {
+            journal.appendPulls(gachaPlayer.getUuid(), crate.getUuid(), pulls);
+            changeListeners.forEach((listener) -> listener.onPullsChanged(gachaPlayer, crate, pulls));
+        }
+
+        @Override
+        public void onRngCounterChanged(GachaPlayer gachaPlayer, long rngCounter) {
+            journal.appendRngCounter(gachaPlayer.getUuid(), rngCounter);
+            changeListeners.forEach((listener) -> listener.onRngCounterChanged(gachaPlayer, rngCounter));
+        }
+
+        @Override
+        public void onReplaced(GachaPlayer gachaPlayer) {
+            changeListeners.forEach((listener) -> listener.onReplaced(gachaPlayer));
+        }
+    };
 
     public PlayerCache(Wish plugin) {
         this.plugin = plugin;
@@ -28,137 +77,349 @@ public class PlayerCache {
      * @param uuid The GachaPlayer UUID
      * @return GachaPlayer
      */
-    public GachaPlayer getPlayer(UUID uuid) {
+    public synchronized GachaPlayer getPlayer(UUID uuid) {
+        lastAccess.put(uuid, System.currentTimeMillis());
+
         if (playerCache.containsKey(uuid)) {
             return playerCache.get(uuid);
         } else {
             GachaPlayer gachaPlayer = new GachaPlayer(uuid);
-            // Ensure fileConfiguration is not null before proceeding
-            if (fileConfiguration == null) {
-                // This might happen if setFile was not called, or data.yml failed to load.
-                // Log an error or handle appropriately. For now, we'll return the new gachaPlayer.
-                // plugin.getLogger().warning("[Wish] PlayerCache: fileConfiguration is null while trying to load player data for " + uuid);
+            // Ensure storage is not null before proceeding
+            if (storage == null) {
+                // This might happen if setStorage was not called, or the storage failed to open.
                 playerCache.put(uuid, gachaPlayer); // Cache the new, empty player
                 return gachaPlayer;
             }
 
-            ConfigurationSection dataSection = fileConfiguration.getConfigurationSection(uuid.toString());
-
-            if (dataSection != null) {
-                // Iterate through each crate UUID stored for the player
-                for (String crateUuidString : dataSection.getKeys(false)) {
-                    // Skip if this key is for our new combined 50/50 status map,
-                    // as that was the old plan. New plan is per-crate.
-                    // This check might not be strictly necessary with the new structure but is harmless.
-                    if (crateUuidString.equals("LimitedBannerGuarantees")) {
-                        continue;
-                    }
-
-                    UUID crateUuid;
-                    try {
-                        crateUuid = UUID.fromString(crateUuidString);
-                    } catch (IllegalArgumentException e) {
-                        plugin.getLogger().warning("[Wish] Invalid Crate UUID string in data.yml for player " + uuid + ": " + crateUuidString);
-                        continue;
-                    }
-
-                    Optional<Crate> optionalCrate = plugin.getCrateCache().getCrate(crateUuid);
-                    if (optionalCrate.isEmpty()) {
-                        // This crate might no longer exist in crates.yml, skip its data.
-                        // plugin.getLogger().info("[Wish] Crate with UUID " + crateUuidString + " not found in cache while loading player data for " + uuid + ". Skipping.");
-                        continue;
-                    }
-                    Crate crate = optionalCrate.get();
-                    ConfigurationSection crateDataSection = dataSection.getConfigurationSection(crateUuidString);
-
-                    if (crateDataSection == null) continue;
-
-                    // Load Pity Map for this crate
-                    ConfigurationSection pityMapSection = crateDataSection.getConfigurationSection("Pity-Map");
-                    if (pityMapSection != null) {
-                        for (String rewardTierName : pityMapSection.getKeys(false)) {
-                            Optional<RewardTier> optionalRewardTier = crate.getRewardTier(rewardTierName);
-                            if (optionalRewardTier.isEmpty()) {
-                                // This reward tier might no longer exist in the crate, skip.
-                                // plugin.getLogger().info("[Wish] RewardTier '" + rewardTierName + "' not found in crate '" + crate.getName() + "' while loading player data. Skipping pity.");
-                                continue;
-                            }
-                            RewardTier rewardTier = optionalRewardTier.get();
-                            gachaPlayer.setPity(crate, rewardTier, pityMapSection.getInt(rewardTierName, 0));
-                        }
-                    }
-
-                    // Load Pulls for this crate
-                    gachaPlayer.setAvailablePulls(crate, crateDataSection.getInt("Pulls", 0));
-
-                    // New: Load 50/50 Guarantee Status for this crate (if applicable)
-                    if (crate.isLimited5050Banner() && crateDataSection.contains("LimitedBannerGuarantee")) {
-                        boolean guaranteeStatus = crateDataSection.getBoolean("LimitedBannerGuarantee");
-                        gachaPlayer.setNext5StarGuaranteedFeatured(crate, guaranteeStatus);
-                    }
+            // An evicted player whose state has not been written yet comes back from that state, and stays dirty
+            // so it gets written again with whatever changes next
+            PlayerSnapshot pendingSnapshot = writeBack.remove(uuid);
+
+            try {
+                PlayerSnapshot snapshot = pendingSnapshot != null ? pendingSnapshot : storage.load(uuid);
+
+                if (snapshot != null) {
+                    loadFrom(gachaPlayer, snapshot);
                 }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "[Wish] Could not load player data of " + uuid, e);
             }
+            gachaPlayer.setDirty(pendingSnapshot != null);
+            gachaPlayer.setChangeListener(changeListener);
             playerCache.put(uuid, gachaPlayer);
             return gachaPlayer;
         }
     }
 
     /**
-     * Save cached data to file
+     * Get a GachaPlayer only if it is cached, without loading it or resetting its expiry. Safe to call from any
+     * thread.
      *
-     * @param customFile The CustomFile (data.yml) to save to
+     * @param uuid The GachaPlayer UUID
+     * @return GachaPlayer, or null if the player is not cached
      */
-    public void saveTo(CustomFile customFile) {
-        if (customFile == null || customFile.getConfig() == null) {
-            plugin.getLogger().severe("[Wish] PlayerCache: Cannot save player data, CustomFile or its config is null!");
-            return;
+    public synchronized GachaPlayer getCachedPlayer(UUID uuid) {
+        return playerCache.get(uuid);
+    }
+
+    /**
+     * Register a listener told about every change to a cached player, after it has been journaled. Must be
+     * called on the main thread.
+     *
+     * @param listener The listener to add
+     */
+    public void addChangeListener(GachaPlayer.ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Retrieve the storage players are loaded from and saved to
+     *
+     * @return PlayerStorage, null before one is set
+     */
+    public PlayerStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Replace the stored state of several players, used by imports. Cached players are dropped and come back from
+     * the imported state the same way evicted players do. Players with an active crate session are skipped.
+     *
+     * @param snapshots The players to import
+     * @param last Whether this is the last batch of the import. Storages that rewrite a whole file only write
+     *             it for the last batch, earlier batches are kept in memory.
+     * @return Future completing with the amount of players imported, once they have been stored
+     */
+    public synchronized CompletableFuture<Integer> importBatch(List<PlayerSnapshot> snapshots, boolean last) {
+        List<PlayerSnapshot> imported = new ArrayList<>(snapshots.size());
+
+        for (PlayerSnapshot snapshot : snapshots) {
+            UUID uuid = snapshot.uuid();
+
+            if (plugin.getSessionManager().getCrateSession(uuid) != null) {
+                continue;
+            }
+            GachaPlayer cached = playerCache.remove(uuid);
+
+            // Journal records of the replaced state would otherwise be replayed over the import after a crash
+            if (cached != null || writeBack.containsKey(uuid)) {
+                journal(snapshot);
+            }
+
+            if (cached != null) {
+                changeListener.onReplaced(cached);
+                cached.setChangeListener(null);
+                lastAccess.remove(uuid);
+            }
+            writeBack.put(uuid, snapshot);
+            imported.add(snapshot);
+        }
+
+        // The last batch is written even if it is empty, it writes the earlier ones too
+        if ((imported.isEmpty() && !last) || storage == null) {
+            return CompletableFuture.completedFuture(imported.size());
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            if (!(last ? write(imported) : stage(imported))) {
+                // Left in writeBack, the next save tries again
+                throw new CompletionException(new IOException("Could not save imported players"));
+            }
+            imported.forEach((snapshot) -> writeBack.remove(snapshot.uuid(), snapshot));
+            return imported.size();
+        }, saveExecutor);
+    }
+
+    /**
+     * Remove offline players that have not been used for Cache-Expiry seconds, then the least recently used ones
+     * while more than Cache-Max-Size players are cached. Changed players are written back before they are dropped
+     * for good. Players with an active crate session, and online players if Cache-Pin-Online is set, are kept.
+     */
+    public synchronized void evict() {
+        long expiredBefore = System.currentTimeMillis() - GachaConfig.CACHE_EXPIRY_SECONDS * 1000L;
+        int excess = playerCache.size() - GachaConfig.CACHE_MAX_SIZE;
+        boolean evictedDirty = false;
+        Iterator<GachaPlayer> iterator = playerCache.values().iterator();
+
+        while (iterator.hasNext()) {
+            GachaPlayer gachaPlayer = iterator.next();
+            UUID uuid = gachaPlayer.getUuid();
+
+            if (isPinned(uuid) || (excess <= 0 && lastAccess.getOrDefault(uuid, 0L) > expiredBefore)) {
+                continue;
+            }
+
+            if (gachaPlayer.isDirty()) {
+                writeBack.put(uuid, PlayerSnapshot.of(gachaPlayer, plugin.getCrateCache().getCrates()));
+                evictedDirty = true;
+            }
+            gachaPlayer.setChangeListener(null);
+            lastAccess.remove(uuid);
+            iterator.remove();
+            excess--;
+        }
+
+        if (evictedDirty) {
+            save();
+        }
+    }
+
+    /**
+     * Note that a player left, expiry of their cached data starts counting from now
+     *
+     * @param uuid The UUID of the player that quit
+     */
+    public synchronized void handleQuit(UUID uuid) {
+        if (playerCache.containsKey(uuid)) {
+            lastAccess.put(uuid, System.currentTimeMillis());
         }
-        FileConfiguration configToSave = customFile.getConfig();
+    }
+
+    private void journal(PlayerSnapshot snapshot) {
+        journal.appendRngCounter(snapshot.uuid(), snapshot.rngCounter());
+
+        for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+            journal.appendPulls(snapshot.uuid(), crateState.crateUuid(), crateState.pulls());
+
+            for (int i = 0; i < crateState.tierNames().length; i++) {
+                journal.appendPity(snapshot.uuid(), crateState.crateUuid(), crateState.tierNames()[i], crateState.pity()[i]);
+            }
+            if (crateState.guarantee() != null) {
+                journal.appendGuarantee(snapshot.uuid(), crateState.crateUuid(), crateState.guarantee());
+            }
+        }
+    }
+
+    private boolean isPinned(UUID uuid) {
+        return plugin.getSessionManager().getCrateSession(uuid) != null || (GachaConfig.CACHE_PIN_ONLINE && Bukkit.getPlayer(uuid) != null);
+    }
+
+    private void loadFrom(GachaPlayer gachaPlayer, PlayerSnapshot snapshot) {
+        gachaPlayer.setRngCounter(snapshot.rngCounter());
+
+        for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+            Optional<Crate> optionalCrate = plugin.getCrateCache().getCrate(crateState.crateUuid());
+            if (optionalCrate.isEmpty()) {
+                // This crate might no longer exist in crates.yml, skip its data.
+                continue;
+            }
+            Crate crate = optionalCrate.get();
+
+            // Load Pity Map for this crate
+            for (int i = 0; i < crateState.tierNames().length; i++) {
+                // This reward tier might no longer exist in the crate, skip.
+                int pity = crateState.pity()[i];
+                crate.getRewardTier(crateState.tierNames()[i]).ifPresent((rewardTier) -> gachaPlayer.setPity(crate, rewardTier, pity));
+            }
+
+            // Load Pulls for this crate
+            gachaPlayer.setAvailablePulls(crate, crateState.pulls());
+
+            // Load 50/50 Guarantee Status for this crate (if applicable)
+            if (crate.isLimited5050Banner() && crateState.guarantee() != null) {
+                gachaPlayer.setNext5StarGuaranteedFeatured(crate, crateState.guarantee());
+            }
+        }
+    }
+
+    /**
+     * Save every changed player, and every evicted player still waiting to be written. Players are snapshotted
+     * on the main thread and handed to the storage on the save thread. The journal is rotated together with the snapshot,
+     * once the file has been written every older journal segment is deleted. Players of a failed write are kept
+     * queued for the next save, and their segments are kept until a save including them succeeds.
+     *
+     * @return Future completing once the file has been written
+     */
+    public synchronized CompletableFuture<Void> save() {
+        // Read before writeBack, every failed batch counted here is already back in it and part of this snapshot
+        int failedWritesSeen = failedWrites.get();
+        List<PlayerSnapshot> snapshots = new ArrayList<>(writeBack.values());
 
         for (GachaPlayer gachaPlayer : playerCache.values()) {
-            String playerUuidString = gachaPlayer.getUuid().toString();
-
-            // Save Pity Map
-            for (Map.Entry<Crate, HashMap<RewardTier, Integer>> pityEntry : gachaPlayer.getPityMap().entrySet()) {
-                Crate crate = pityEntry.getKey();
-                String crateUuidString = crate.getUuid().toString();
-                for (Map.Entry<RewardTier, Integer> tierPity : pityEntry.getValue().entrySet()) {
-                    configToSave.set(playerUuidString + "." + crateUuidString + ".Pity-Map." + tierPity.getKey().getName(), tierPity.getValue());
+            if (!gachaPlayer.isDirty()) {
+                continue;
+            }
+            snapshots.add(PlayerSnapshot.of(gachaPlayer, plugin.getCrateCache().getCrates()));
+            gachaPlayer.setDirty(false);
+        }
+
+        if (snapshots.isEmpty() || storage == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long firstKeptSegment = journal.rotate();
+
+        return CompletableFuture.runAsync(() -> {
+            if (write(snapshots)) {
+                // Keep evicted players that were loaded again or evicted again since, they are not in this batch
+                snapshots.forEach((snapshot) -> writeBack.remove(snapshot.uuid(), snapshot));
+
+                // A batch that failed after this snapshot was taken is not in it, its changes only live in the
+                // older segments until a later save includes them
+                if (failedWrites.get() == failedWritesSeen) {
+                    journal.deleteSegmentsBefore(Math.min(firstKeptSegment, firstUnreplayedSegment));
                 }
+            } else {
+                // Players are no longer marked dirty, queue them like evicted players so the next save tries again.
+                // A newer snapshot queued since, e.g. by an eviction, is kept.
+                snapshots.forEach((snapshot) -> writeBack.putIfAbsent(snapshot.uuid(), snapshot));
+                failedWrites.incrementAndGet();
             }
+        }, saveExecutor);
+    }
+
+    /**
+     * Set the storage players are loaded from and saved to, and recover changes journaled since its last save
+     *
+     * @param storage The PlayerStorage to use
+     */
+    public void setStorage(PlayerStorage storage) {
+        this.storage = storage;
+        this.journal = new PlayerJournal(new File(plugin.getDataFolder(), "journal"), plugin.getLogger());
+        recoverJournal();
+    }
+
+    /**
+     * Start saving changed players every Autosave-Interval seconds, and evicting unused players every minute
+     */
+    public void startAutosave() {
+        long intervalTicks = GachaConfig.AUTOSAVE_INTERVAL_SECONDS * 20L;
+
+        if (intervalTicks > 0) {
+            Bukkit.getScheduler().runTaskTimer(plugin, this::save, intervalTicks, intervalTicks);
+        }
+        Bukkit.getScheduler().runTaskTimer(plugin, this::evict, 1200L, 1200L);
+    }
+
+    /**
+     * Save every changed player and wait for all pending writes to finish, used when the plugin shuts down
+     */
+    public void shutdown() {
+        save();
+        saveExecutor.shutdown();
 
-            // Save Pull Map
-            for (Map.Entry<Crate, Integer> pullEntry : gachaPlayer.getPullMap().entrySet()) {
-                Crate crate = pullEntry.getKey();
-                String crateUuidString = crate.getUuid().toString();
-                configToSave.set(playerUuidString + "." + crateUuidString + ".Pulls", pullEntry.getValue());
+        try {
+            if (!saveExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("[Wish] Timed out waiting for player data to be saved.");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-            // New: Save 50/50 Guarantee Status Map
-            // This map in GachaPlayer stores UUID of Crate -> Boolean status
-            for (Map.Entry<UUID, Boolean> guaranteeEntry : gachaPlayer.getLimitedBannerGuaranteeStatusMap().entrySet()) {
-                UUID crateUuid = guaranteeEntry.getKey();
-                Boolean status = guaranteeEntry.getValue();
+        if (journal != null) {
+            journal.close();
+        }
 
-                // We only want to save this if the crate is actually a limited 50/50 banner
-                // However, GachaPlayer's map might contain entries for crates that were once limited but no longer are.
-                // It's safer to just save what's in the map. The Crate object itself (from CrateCache)
-                // will determine if it *acts* as a 50/50 banner during runtime based on its current config.
-                // Or, ensure GachaPlayer only stores statuses for crates that are *currently* configured as such.
-                // For simplicity in saving, we save what's tracked. Loading logic will be selective.
-                configToSave.set(playerUuidString + "." + crateUuid.toString() + ".LimitedBannerGuarantee", status);
+        if (storage != null) {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "[Wish] Could not close player storage", e);
             }
         }
-        customFile.saveConfig();
     }
 
     /**
-     * Set data file configuration to cache from and save to.
-     * This should be the FileConfiguration for data.yml.
-     *
-     * @param fileConfiguration The FileConfiguration containing cacheable data
+     * Apply every journaled change left over from the last run to data.yml, write it and start a new journal
      */
-    public void setFile(FileConfiguration fileConfiguration) {
-        this.fileConfiguration = fileConfiguration;
+    private void recoverJournal() {
+        int[] replayed = {0};
+        long firstSegment;
+
+        try {
+            storage.update((visitor) -> replayed[0] = journal.replay(visitor));
+            firstSegment = journal.open(GachaConfig.JOURNAL_COMMIT_MILLIS);
+        } catch (IOException e) {
+            // Keep the old segments around, they are replayed again on the next start. Every later segment has to
+            // stay as well, replaying the old ones alone would roll back whatever was saved since.
+            firstUnreplayedSegment = journal.getFirstSegment();
+            plugin.getLogger().log(Level.SEVERE, "[Wish] Could not apply the player data journal, journal segments will be kept until the next start", e);
+            journal.open(GachaConfig.JOURNAL_COMMIT_MILLIS);
+            return;
+        }
+
+        if (replayed[0] > 0) {
+            plugin.getLogger().info("[Wish] Recovered " + replayed[0] + " player data changes from the journal.");
+        }
+        journal.deleteSegmentsBefore(firstSegment);
+    }
+
+    private boolean stage(List<PlayerSnapshot> snapshots) {
+        try {
+            storage.stageBatch(snapshots);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "[Wish] Could not save player data", e);
+            return false;
+        }
+    }
+
+    private boolean write(List<PlayerSnapshot> snapshots) {
+        try {
+            storage.saveBatch(snapshots);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "[Wish] Could not save player data", e);
+            return false;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+package imperatrix.wish.cache;
+
+import imperatrix.wish.Wish;
+import imperatrix.wish.struct.GachaPlayer;
+import imperatrix.wish.struct.crate.CrateSession;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+public class RngProvider {
+    private final Wish plugin;
+    private long serverSeed;
+
+    public RngProvider(Wish plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Create the random stream for a specific player counter. The same seed, player and counter always
+     * give the same stream, which is what makes a pull replayable
+     *
+     * @param playerUuid The UUID of the player
+     * @param counter The player's stream counter at the time of the pull
+     * @return SplittableRandom
+     */
+    public SplittableRandom createStream(UUID playerUuid, long counter) {
+        return createStream(serverSeed, playerUuid, counter);
+    }
+
+    /**
+     * Create the random stream for a specific player counter under a given server seed, without a running server
+     *
+     * @param serverSeed The Rng-Seed of the server
+     * @param playerUuid The UUID of the player
+     * @param counter The player's stream counter at the time of the pull
+     * @return SplittableRandom
+     */
+    public static SplittableRandom createStream(long serverSeed, UUID playerUuid, long counter) {
+        long seed = mix(serverSeed ^ mix(playerUuid.getMostSignificantBits() ^ mix(playerUuid.getLeastSignificantBits() ^ mix(counter))));
+        return new SplittableRandom(seed);
+    }
+
+    public long getServerSeed() {
+        return serverSeed;
+    }
+
+    /**
+     * Load the server seed, generating and saving one if none is configured yet
+     *
+     * @param config The plugin config
+     */
+    public void load(FileConfiguration config) {
+        if (!config.isSet("Rng-Seed")) {
+            config.set("Rng-Seed", new SecureRandom().nextLong());
+            plugin.saveConfig();
+        }
+
+        serverSeed = config.getLong("Rng-Seed");
+    }
+
+    /**
+     * Give a session a fresh random stream, advancing the player's stream counter
+     *
+     * @param gachaPlayer The player opening the crate
+     * @param crateSession The session to attach the stream to
+     */
+    public void openStream(GachaPlayer gachaPlayer, CrateSession crateSession) {
+        long counter = gachaPlayer.getRngCounter();
+
+        gachaPlayer.setRngCounter(counter + 1);
+        crateSession.setRandom(createStream(gachaPlayer.getUuid(), counter), counter);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
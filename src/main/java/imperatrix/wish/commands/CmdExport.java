@@ -0,0 +1,63 @@
+package imperatrix.wish.commands;
+
+import imperatrix.wish.Wish;
+import imperatrix.wish.lang.Lang;
+import imperatrix.wish.storage.PlayerDataTransfer;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.logging.Level;
+
+public class CmdExport extends CrateCommand {
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private final Wish plugin;
+
+    public CmdExport(Wish plugin) {
+        super("export", 0, 1);
+        setPermission("wish.admin");
+
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run(CommandSender sender, String[] args) {
+        PlayerDataTransfer transfer = plugin.getPlayerDataTransfer();
+        HashMap<String, String> replacements = new HashMap<>();
+        String fileName = args.length == 0 ? "exports/players-" + LocalDateTime.now().format(FILE_DATE_FORMAT) + ".ndjson" : args[0];
+        File file = transfer.resolveFile(fileName);
+
+        replacements.put("%file%", fileName);
+
+        if (transfer.isRunning()) {
+            Lang.ERR_TRANSFER_RUNNING.send(sender);
+            return;
+        }
+
+        if (file == null) {
+            Lang.ERR_INVALID_FILE.send(sender, replacements);
+            return;
+        }
+
+        Lang.TRANSFER_STARTED.send(sender, replacements);
+        transfer.exportTo(file, (count) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            HashMap<String, String> progressReplacements = new HashMap<>();
+
+            progressReplacements.put("%count%", Integer.toString(count));
+            Lang.TRANSFER_PROGRESS.send(sender, progressReplacements);
+        })).whenComplete((count, throwable) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (throwable != null) {
+                plugin.getLogger().log(Level.SEVERE, "[Wish] Could not export player data to " + file, throwable);
+                replacements.put("%error%", String.valueOf(throwable.getCause() != null ? throwable.getCause().getMessage() : throwable.getMessage()));
+                Lang.ERR_TRANSFER_FAILED.send(sender, replacements);
+                return;
+            }
+
+            replacements.put("%count%", Integer.toString(count));
+            Lang.TRANSFER_EXPORTED.send(sender, replacements);
+        }));
+    }
+}
@@ -0,0 +1,65 @@
+package imperatrix.wish.commands;
+
+import imperatrix.wish.Wish;
+import imperatrix.wish.lang.Lang;
+import imperatrix.wish.storage.PlayerDataTransfer;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.logging.Level;
+
+public class CmdImport extends CrateCommand {
+    private final Wish plugin;
+
+    public CmdImport(Wish plugin) {
+        super("import", 1, 1);
+        setPermission("wish.admin");
+
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run(CommandSender sender, String[] args) {
+        PlayerDataTransfer transfer = plugin.getPlayerDataTransfer();
+        HashMap<String, String> replacements = new HashMap<>();
+        File file = transfer.resolveFile(args[0]);
+
+        replacements.put("%file%", args[0]);
+
+        if (transfer.isRunning()) {
+            Lang.ERR_TRANSFER_RUNNING.send(sender);
+            return;
+        }
+
+        if (file == null) {
+            Lang.ERR_INVALID_FILE.send(sender, replacements);
+            return;
+        }
+
+        if (!file.isFile()) {
+            Lang.ERR_FILE_NOT_FOUND.send(sender, replacements);
+            return;
+        }
+
+        Lang.TRANSFER_STARTED.send(sender, replacements);
+        transfer.importFrom(file, (count) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            HashMap<String, String> progressReplacements = new HashMap<>();
+
+            progressReplacements.put("%count%", Integer.toString(count));
+            Lang.TRANSFER_PROGRESS.send(sender, progressReplacements);
+        })).whenComplete((result, throwable) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (throwable != null) {
+                plugin.getLogger().log(Level.SEVERE, "[Wish] Could not import player data from " + file, throwable);
+                replacements.put("%error%", String.valueOf(throwable.getCause() != null ? throwable.getCause().getMessage() : throwable.getMessage()));
+                Lang.ERR_TRANSFER_FAILED.send(sender, replacements);
+                return;
+            }
+
+            replacements.put("%count%", Integer.toString(result.players()));
+            replacements.put("%skipped%", Integer.toString(result.skipped()));
+            Lang.TRANSFER_IMPORTED.send(sender, replacements);
+        }));
+    }
+}
@@ -0,0 +1,33 @@
+package imperatrix.wish.commands;
+
+import imperatrix.wish.Wish;
+import imperatrix.wish.delivery.RewardDeliveryQueue;
+import imperatrix.wish.lang.Lang;
+import org.bukkit.command.CommandSender;
+
+import java.text.DecimalFormat;
+import java.util.HashMap;
+
+public class CmdQueue extends CrateCommand {
+    private final Wish plugin;
+
+    public CmdQueue(Wish plugin) {
+        super("queue", 0, 0);
+        setPermission("wish.admin");
+
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run(CommandSender sender, String[] args) {
+        RewardDeliveryQueue deliveryQueue = plugin.getDeliveryQueue();
+        DecimalFormat decimalFormat = new DecimalFormat("0.##");
+        HashMap<String, String> replacements = new HashMap<>();
+
+        replacements.put("%depth%", Integer.toString(deliveryQueue.getDepth()));
+        replacements.put("%players%", Integer.toString(deliveryQueue.getWaitingPlayers()));
+        replacements.put("%avg-latency%", decimalFormat.format(deliveryQueue.getAverageLatencyMillis()));
+        replacements.put("%max-latency%", decimalFormat.format(deliveryQueue.getMaxLatencyMillis()));
+        Lang.DELIVERY_QUEUE_STATUS.send(sender, replacements);
+    }
+}
@@ -39,7 +39,7 @@ public class CmdRemove extends CrateCommand {
         }
 
         replacements.put("%crate%", optionalCrate.get().getName());
-        optionalCrate.get().removeLocation(targetBlock.getLocation());
+        plugin.getCrateCache().removeLocation(optionalCrate.get(), targetBlock.getLocation());
         Lang.CRATE_LOCATION_REMOVED.send(player, replacements);
     }
 }
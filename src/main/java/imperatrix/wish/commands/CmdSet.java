@@ -46,7 +46,7 @@ public class CmdSet extends CrateCommand {
             return;
         }
 
-        crate.get().addLocation(targetBlock.getLocation());
+        plugin.getCrateCache().addLocation(crate.get(), targetBlock.getLocation());
         Lang.CRATE_LOCATION_ADDED.send(player, replacements);
     }
 }
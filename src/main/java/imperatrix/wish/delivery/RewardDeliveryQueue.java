@@ -0,0 +1,310 @@
+package imperatrix.wish.delivery;
+
+import imperatrix.wish.Wish;
+import imperatrix.wish.cache.GachaConfig;
+import imperatrix.wish.struct.crate.Crate;
+import imperatrix.wish.struct.reward.Reward;
+import imperatrix.wish.struct.reward.RewardTier;
+import imperatrix.wish.util.Utils;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * Delivers rewards spread over ticks. Every command and every item bundle of a reward is a separate delivery,
+ * and each tick only runs deliveries until the configured time budget is used up. Deliveries of one player
+ * always run in the order they were queued, players take turns so a big multi-pull cannot starve the others.
+ * <p>
+ * Deliveries still waiting for an offline player when the plugin stops are saved to pending-deliveries.yml, by
+ * crate, tier and reward name, and queued again on the next start.
+ */
+public class RewardDeliveryQueue {
+    private static final String PENDING_FILE = "pending-deliveries.yml";
+
+    private final Wish plugin;
+    private final LinkedHashMap<UUID, ArrayDeque<Delivery>> queues = new LinkedHashMap<>();
+    private BukkitTask task;
+    private int depth = 0;
+    private long deliveredCount = 0;
+    private long totalLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+
+    public RewardDeliveryQueue(Wish plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Queue a reward for a player
+     *
+     * @param player The player receiving the reward
+     * @param crate The crate the reward was pulled from
+     * @param reward The reward to deliver
+     */
+    public void enqueue(Player player, Crate crate, Reward reward) {
+        ArrayDeque<Delivery> queue = queues.computeIfAbsent(player.getUniqueId(), (u) -> new ArrayDeque<>());
+        long now = System.nanoTime();
+        int steps = reward.getCommands().size() + (reward.getItems().isEmpty() ? 0 : 1);
+        // Tiers of a crate may hold rewards of the same name, the tier tells them apart once saved
+        String tierName = crate.getRewardTiers().stream().filter((tier) -> tier.getRewards().contains(reward))
+                .map(RewardTier::getName).findFirst().orElse(null);
+
+        for (int step = 0; step < steps; step++) {
+            queue.add(new Delivery(player.getUniqueId(), player.getName(), crate.getUuid(), tierName, reward, step, now));
+        }
+        depth += steps;
+    }
+
+    /**
+     * Deliver everything that can still be delivered, and save what is left for the next start. Used when the
+     * plugin shuts down.
+     */
+    public void flush() {
+        drain(Long.MAX_VALUE);
+
+        if (depth > 0) {
+            plugin.getLogger().info("[Wish] Saving " + depth + " reward deliveries for " + queues.size() + " offline player(s) until they return.");
+        }
+        savePending();
+    }
+
+    /**
+     * Retrieve the average time between queueing and delivery
+     *
+     * @return Average latency in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        return deliveredCount == 0 ? 0.0 : totalLatencyNanos / (double) deliveredCount / 1_000_000.0;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * Retrieve the amount of deliveries waiting
+     *
+     * @return Queue depth as int
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Retrieve the amount of deliveries waiting for a player
+     *
+     * @param playerUuid The UUID of the player
+     * @return Queue depth as int
+     */
+    public int getDepth(UUID playerUuid) {
+        ArrayDeque<Delivery> queue = queues.get(playerUuid);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Retrieve the longest time between queueing and delivery seen so far
+     *
+     * @return Max latency in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1_000_000.0;
+    }
+
+    public int getWaitingPlayers() {
+        return queues.size();
+    }
+
+    /**
+     * Queue deliveries saved by the last shutdown, then start draining the queue every tick. Crates must be
+     * loaded.
+     */
+    public void start() {
+        loadPending();
+
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, () -> drain(GachaConfig.DELIVERY_BUDGET_NANOS), 1L, 1L);
+        }
+    }
+
+    /**
+     * Stop draining and deliver whatever is left
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        flush();
+    }
+
+    private void drain(long budgetNanos) {
+        if (depth == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean first = true;
+
+        // One delivery per player per pass, until the budget runs out or nothing can be delivered
+        while (depth > 0) {
+            boolean progressed = false;
+            Iterator<ArrayDeque<Delivery>> iterator = queues.values().iterator();
+
+            while (iterator.hasNext()) {
+                ArrayDeque<Delivery> queue = iterator.next();
+
+                // Always deliver at least one reward per tick so a tiny budget cannot stall the queue
+                if (!first && System.nanoTime() - start >= budgetNanos) {
+                    return;
+                }
+                if (!deliver(queue.peek())) {
+                    continue; // Player is offline, keep their deliveries for when they return
+                }
+                queue.poll();
+                depth--;
+                first = false;
+                progressed = true;
+
+                if (queue.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+
+            if (!progressed) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queue the deliveries saved by the last shutdown again, and remove the file so they are not queued twice
+     */
+    private void loadPending() {
+        File file = new File(plugin.getDataFolder(), PENDING_FILE);
+
+        if (!file.exists()) {
+            return;
+        }
+        YamlConfiguration pending = YamlConfiguration.loadConfiguration(file);
+        long now = System.nanoTime();
+        int restored = 0;
+
+        for (String key : pending.getKeys(false)) {
+            ConfigurationSection playerSection = pending.getConfigurationSection(key);
+
+            if (playerSection == null) {
+                continue;
+            }
+            String playerName = playerSection.getString("name");
+
+            for (Map<?, ?> entry : playerSection.getMapList("deliveries")) {
+                Delivery delivery = null;
+
+                try {
+                    UUID crateUuid = UUID.fromString(String.valueOf(entry.get("crate")));
+                    String tierName = String.valueOf(entry.get("tier"));
+                    Optional<Reward> reward = findReward(crateUuid, tierName, String.valueOf(entry.get("reward")));
+                    int step = entry.get("step") instanceof Number number ? number.intValue() : -1;
+
+                    if (reward.isPresent() && step >= 0 && step < reward.get().getCommands().size() + (reward.get().getItems().isEmpty() ? 0 : 1)) {
+                        delivery = new Delivery(UUID.fromString(key), playerName, crateUuid, tierName, reward.get(), step, now);
+                    }
+                } catch (IllegalArgumentException ignored) {
+                    // Player or crate is not a UUID, dropped below
+                }
+
+                if (delivery == null) {
+                    plugin.getLogger().warning("[Wish] Dropping saved reward delivery " + entry + " of " + playerName + ", its crate or reward no longer exists.");
+                    continue;
+                }
+                queues.computeIfAbsent(delivery.playerUuid(), (u) -> new ArrayDeque<>()).add(delivery);
+                restored++;
+            }
+        }
+        depth += restored;
+
+        try {
+            Files.delete(file.toPath());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "[Wish] Could not delete " + file + ", its reward deliveries are queued twice if the server stops without shutting down", e);
+        }
+
+        if (restored > 0) {
+            plugin.getLogger().info("[Wish] Queued " + restored + " reward deliveries saved by the last shutdown.");
+        }
+    }
+
+    private Optional<Reward> findReward(UUID crateUuid, String tierName, String rewardName) {
+        return plugin.getCrateCache().getCrate(crateUuid)
+                .flatMap((crate) -> crate.getRewardTier(tierName))
+                .flatMap((tier) -> tier.getRewards().stream().filter((reward) -> reward.getName().equals(rewardName)).findFirst());
+    }
+
+    /**
+     * Write every delivery still queued to the pending file, or remove the file if nothing is queued
+     */
+    private void savePending() {
+        File file = new File(plugin.getDataFolder(), PENDING_FILE);
+
+        try {
+            if (depth == 0) {
+                Files.deleteIfExists(file.toPath());
+                return;
+            }
+            YamlConfiguration pending = new YamlConfiguration();
+
+            for (Map.Entry<UUID, ArrayDeque<Delivery>> entry : queues.entrySet()) {
+                ConfigurationSection playerSection = pending.createSection(entry.getKey().toString());
+                List<Map<String, Object>> deliveries = new ArrayList<>(entry.getValue().size());
+
+                playerSection.set("name", entry.getValue().peek().playerName()); // Empty queues are removed
+                for (Delivery delivery : entry.getValue()) {
+                    Map<String, Object> saved = new LinkedHashMap<>();
+
+                    saved.put("crate", delivery.crateUuid().toString());
+                    saved.put("tier", delivery.tierName());
+                    saved.put("reward", delivery.reward().getName());
+                    saved.put("step", delivery.step());
+                    deliveries.add(saved);
+                }
+                playerSection.set("deliveries", deliveries);
+            }
+            Utils.writeAtomically(file.toPath(), pending.saveToString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "[Wish] Could not save " + depth + " pending reward deliveries, they are lost", e);
+        }
+    }
+
+    private boolean deliver(Delivery delivery) {
+        Reward reward = delivery.reward();
+        Player player = Bukkit.getPlayer(delivery.playerUuid());
+
+        // Commands such as give fail for offline players, so they wait for the player like items do
+        if (player == null || !player.isOnline()) {
+            return false;
+        }
+
+        if (delivery.step() < reward.getCommands().size()) {
+            reward.dispatchCommand(delivery.step(), player.getName());
+        } else {
+            reward.giveItems(player);
+        }
+        long latency = System.nanoTime() - delivery.queuedAt();
+
+        deliveredCount++;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        return true;
+    }
+
+    private record Delivery(UUID playerUuid, String playerName, UUID crateUuid, String tierName, Reward reward, int step, long queuedAt) {
+    }
+}
@@ -1,23 +1,64 @@
 package imperatrix.wish.file;
 
+import imperatrix.wish.util.Utils;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 public class CustomFile {
+    private static final long SAVE_WINDOW_TICKS = 20L; // Saves requested within a second are written once
     private final JavaPlugin plugin;
     private final String fileName;
+    private final Executor writeExecutor;
     private File file = null;
     private FileConfiguration configFile = null;
+    private BukkitTask saveTask = null;
+    private boolean savePending = false;
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
 
-    public CustomFile(JavaPlugin plugin, String fileName) {
+    public CustomFile(JavaPlugin plugin, String fileName, Executor writeExecutor) {
         this.plugin = plugin;
         this.fileName = fileName;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /**
+     * Write a pending save right away instead of waiting for the save window to close. The config is copied on
+     * the calling thread, it is serialised and written on the write thread.
+     *
+     * @return Future completing once the file has been written
+     */
+    public CompletableFuture<Void> flush() {
+        if (saveTask != null) {
+            saveTask.cancel();
+            saveTask = null;
+        }
+
+        if (!savePending) {
+            return lastWrite;
+        }
+        savePending = false;
+        YamlConfiguration snapshot = snapshot();
+        File target = getFile();
+
+        lastWrite = CompletableFuture.runAsync(() -> {
+            try {
+                Utils.writeAtomically(target.toPath(), snapshot.saveToString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.SEVERE, "Could not save config to " + target, e);
+            }
+        }, writeExecutor);
+        return lastWrite;
     }
 
     public FileConfiguration getConfig() {
@@ -27,10 +68,18 @@ public class CustomFile {
         return configFile;
     }
 
+    public File getFile() {
+        if (file == null) {
+            file = new File(plugin.getDataFolder(), fileName + ".yml");
+        }
+        return file;
+    }
+
     public void reloadConfig() {
         if (configFile == null) {
             file = new File(plugin.getDataFolder(), fileName + ".yml");
         }
+        flush().join(); // Unsaved changes would otherwise be lost, or overwrite the reloaded file later
         configFile = YamlConfiguration.loadConfiguration(file);
         InputStream inputStream = plugin.getResource(fileName + ".yml");
 
@@ -41,15 +90,50 @@ public class CustomFile {
         }
     }
 
+    /**
+     * Request a save. Requests are merged over a short window and written off the main thread, through a temp
+     * file that is renamed over the real one so a crash never leaves it truncated.
+     */
     public void saveConfig() {
         if (configFile == null || file == null) {
             return;
         }
-        try {
-            getConfig().save(file);
-        } catch (IOException ex) {
-            Bukkit.getLogger().log(Level.SEVERE, "Could not save config to " + configFile);
+
+        if (savePending) {
+            return; // The scheduled save writes this change too
+        }
+        savePending = true;
+
+        // Tasks cannot be scheduled while the plugin is disabling
+        if (Utils.isHeadless() || !plugin.isEnabled()) {
+            flush();
+            return;
+        }
+        saveTask = Bukkit.getScheduler().runTaskLater(plugin, this::flush, SAVE_WINDOW_TICKS);
+    }
+
+    /**
+     * Copy every value, section and comment, so the copy can be serialised on another thread while the original
+     * keeps changing. Lists are copied, other values are immutable.
+     */
+    private YamlConfiguration snapshot() {
+        YamlConfiguration copy = new YamlConfiguration();
+
+        copy.options().setHeader(configFile.options().getHeader());
+        copy.options().setFooter(configFile.options().getFooter());
+
+        // Parents come before their children, so sections exist before their values are set
+        for (String key : configFile.getKeys(true)) {
+            if (configFile.isConfigurationSection(key)) {
+                copy.createSection(key);
+            } else {
+                Object value = configFile.get(key);
+                copy.set(key, value instanceof List<?> list ? new ArrayList<>(list) : value);
+            }
+            copy.setComments(key, configFile.getComments(key));
+            copy.setInlineComments(key, configFile.getInlineComments(key));
         }
+        return copy;
     }
 
     public void saveDefaultConfig() {
@@ -3,10 +3,14 @@ package imperatrix.wish.file;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class FileManager {
     private final HashMap<String, CustomFile> fileHashMap = new HashMap<>();
     private final JavaPlugin plugin;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor((r) -> new Thread(r, "Wish-Files"));
 
     public FileManager(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -30,7 +34,7 @@ public class FileManager {
         }
 
         if (customFile == null) {
-            customFile = new CustomFile(plugin, name);
+            customFile = new CustomFile(plugin, name, writeExecutor);
             fileHashMap.put(name, customFile);
         }
 
@@ -50,4 +54,20 @@ public class FileManager {
     public void saveAllFiles() {
         fileHashMap.values().forEach(CustomFile::saveConfig);
     }
+
+    /**
+     * Write every pending save and wait for all writes to finish, used when the plugin shuts down
+     */
+    public void shutdown() {
+        fileHashMap.values().forEach(CustomFile::flush);
+        writeExecutor.shutdown();
+
+        try {
+            if (!writeExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("[Wish] Timed out waiting for files to be saved.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
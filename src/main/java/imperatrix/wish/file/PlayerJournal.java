@@ -0,0 +1,325 @@
+package imperatrix.wish.file;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of player state changes. Records are buffered in memory and committed to the
+ * current segment file in groups on a background thread. Each record is framed as length, body and CRC32 so a
+ * torn write at the end of a segment is detected and ignored on replay.
+ * <p>
+ * Records refer to crates by UUID and to tiers by name, so they stay valid if crates.yml is reordered.
+ */
+public class PlayerJournal {
+    private static final byte PULLS = 1;
+    private static final byte PITY = 2;
+    private static final byte GUARANTEE = 3;
+    private static final byte RNG_COUNTER = 4;
+    private static final int MAX_RECORD_LENGTH = 1024;
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private final File directory;
+    private final Logger logger;
+    private final Object lock = new Object(); // Guards pending and segment
+    private final ScheduledExecutorService committer = Executors.newSingleThreadScheduledExecutor((r) -> new Thread(r, "Wish-Journal"));
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long segment = 0;
+    private FileChannel channel; // Only touched on the committer thread
+
+    public PlayerJournal(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    public void appendGuarantee(UUID playerUuid, UUID crateUuid, boolean guaranteed) {
+        append(GUARANTEE, playerUuid, crateUuid, (out) -> out.writeBoolean(guaranteed));
+    }
+
+    public void appendPity(UUID playerUuid, UUID crateUuid, String tierName, int pity) {
+        append(PITY, playerUuid, crateUuid, (out) -> {
+            out.writeUTF(tierName);
+            out.writeInt(pity);
+        });
+    }
+
+    public void appendPulls(UUID playerUuid, UUID crateUuid, int pulls) {
+        append(PULLS, playerUuid, crateUuid, (out) -> out.writeInt(pulls));
+    }
+
+    public void appendRngCounter(UUID playerUuid, long rngCounter) {
+        append(RNG_COUNTER, playerUuid, null, (out) -> out.writeLong(rngCounter));
+    }
+
+    /**
+     * Commit everything still buffered and stop the journal
+     */
+    public void close() {
+        committer.execute(this::commit);
+        committer.shutdown();
+
+        try {
+            if (!committer.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.severe("[Wish] Timed out waiting for the journal to be committed.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeChannel();
+    }
+
+    /**
+     * Delete every segment older than the given one, called once a full save covering them succeeded
+     *
+     * @param firstKeptSegment The oldest segment to keep
+     */
+    public void deleteSegmentsBefore(long firstKeptSegment) {
+        for (long segmentNumber : listSegments()) {
+            if (segmentNumber < firstKeptSegment && !segmentFile(segmentNumber).delete()) {
+                logger.warning("[Wish] Could not delete journal segment " + segmentFile(segmentNumber));
+            }
+        }
+    }
+
+    /**
+     * Retrieve the number of the oldest segment on disk
+     *
+     * @return The segment number, or Long.MAX_VALUE if there are no segments
+     */
+    public long getFirstSegment() {
+        long[] segments = listSegments();
+        return segments.length == 0 ? Long.MAX_VALUE : segments[0];
+    }
+
+    /**
+     * Start a new segment after the existing ones and begin committing every interval
+     *
+     * @param commitIntervalMillis How long records may sit in memory before being committed
+     * @return The number of the new segment
+     */
+    public long open(long commitIntervalMillis) {
+        long[] segments = listSegments();
+
+        synchronized (lock) {
+            segment = segments.length == 0 ? 1 : segments[segments.length - 1] + 1;
+        }
+        long firstSegment = segment;
+
+        committer.execute(() -> openChannel(firstSegment));
+        committer.scheduleWithFixedDelay(this::commit, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+        return firstSegment;
+    }
+
+    /**
+     * Replay every record of every segment, oldest first
+     *
+     * @param visitor Receives each record
+     * @return The amount of records replayed
+     */
+    public int replay(Visitor visitor) {
+        int count = 0;
+
+        for (long segmentNumber : listSegments()) {
+            File file = segmentFile(segmentNumber);
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                count += replaySegment(in, visitor);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[Wish] Could not read journal segment " + file, e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Start a new segment. Records appended before this call end up in older segments, so a save snapshotted
+     * right after rotating covers every older segment.
+     *
+     * @return The number of the new segment
+     */
+    public long rotate() {
+        byte[] previous;
+        long newSegment;
+
+        synchronized (lock) {
+            previous = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+            newSegment = ++segment;
+        }
+
+        committer.execute(() -> {
+            write(previous);
+            closeChannel();
+            openChannel(newSegment);
+        });
+        return newSegment;
+    }
+
+    private void append(byte type, UUID playerUuid, UUID crateUuid, RecordWriter payload) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(body);
+
+            out.writeByte(type);
+            out.writeLong(playerUuid.getMostSignificantBits());
+            out.writeLong(playerUuid.getLeastSignificantBits());
+            if (crateUuid != null) {
+                out.writeLong(crateUuid.getMostSignificantBits());
+                out.writeLong(crateUuid.getLeastSignificantBits());
+            }
+            payload.write(out);
+            byte[] bytes = body.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            synchronized (lock) {
+                DataOutputStream pendingOut = new DataOutputStream(pending);
+                pendingOut.writeInt(bytes.length);
+                pendingOut.write(bytes);
+                pendingOut.writeInt((int) crc.getValue());
+            }
+        } catch (IOException e) {
+            // Writing to memory cannot fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void commit() {
+        byte[] bytes;
+
+        synchronized (lock) {
+            if (pending.size() == 0) {
+                return;
+            }
+            bytes = pending.toByteArray();
+            pending.reset();
+        }
+        write(bytes);
+    }
+
+    private void write(byte[] bytes) {
+        if (bytes.length == 0 || channel == null) {
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "[Wish] Could not write to the player journal", e);
+        }
+    }
+
+    private void openChannel(long segmentNumber) {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            channel = FileChannel.open(segmentFile(segmentNumber).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "[Wish] Could not open journal segment " + segmentNumber + ", changes will only be saved on autosave", e);
+            channel = null;
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[Wish] Could not close journal segment", e);
+        }
+        channel = null;
+    }
+
+    private long[] listSegments() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+
+        if (files == null) {
+            return new long[0];
+        }
+        return Arrays.stream(files)
+                .map((f) -> f.getName().substring(0, f.getName().length() - SEGMENT_SUFFIX.length()))
+                .filter((n) -> !n.isEmpty() && n.chars().allMatch(Character::isDigit))
+                .mapToLong(Long::parseLong)
+                .sorted()
+                .toArray();
+    }
+
+    private int replaySegment(DataInputStream in, Visitor visitor) throws IOException {
+        int count = 0;
+
+        while (true) {
+            int length;
+            byte[] body;
+
+            try {
+                length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    return count; // Garbage after a torn write
+                }
+                body = new byte[length];
+                in.readFully(body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if (in.readInt() != (int) crc.getValue()) {
+                    return count;
+                }
+            } catch (EOFException e) {
+                return count;
+            }
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+            byte type = record.readByte();
+            UUID playerUuid = new UUID(record.readLong(), record.readLong());
+
+            switch (type) {
+                case PULLS -> visitor.pulls(playerUuid, new UUID(record.readLong(), record.readLong()), record.readInt());
+                case PITY -> visitor.pity(playerUuid, new UUID(record.readLong(), record.readLong()), record.readUTF(), record.readInt());
+                case GUARANTEE -> visitor.guarantee(playerUuid, new UUID(record.readLong(), record.readLong()), record.readBoolean());
+                case RNG_COUNTER -> visitor.rngCounter(playerUuid, record.readLong());
+                default -> {
+                    logger.warning("[Wish] Unknown journal record type " + type + ", skipping it.");
+                    continue;
+                }
+            }
+            count++;
+        }
+    }
+
+    private File segmentFile(long segmentNumber) {
+        return new File(directory, String.format("%016d", segmentNumber) + SEGMENT_SUFFIX);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Receives journal records on replay
+     */
+    public interface Visitor {
+        void guarantee(UUID playerUuid, UUID crateUuid, boolean guaranteed);
+
+        void pity(UUID playerUuid, UUID crateUuid, String tierName, int pity);
+
+        void pulls(UUID playerUuid, UUID crateUuid, int pulls);
+
+        void rngCounter(UUID playerUuid, long rngCounter);
+    }
+}
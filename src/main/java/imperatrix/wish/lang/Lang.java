@@ -13,6 +13,8 @@ public enum Lang {
     ERR_ALREADY_CRATE("err-already-crate", "A wish already exists here", LangType.NORMAL),
     ERR_CRATE_IN_USE("err-crate-in-use", "This wish is already being opened, try again later", LangType.NORMAL),
     ERR_INVALID_AMOUNT("err-invalid-amount", "%arg% must be a number above 0", LangType.NORMAL),
+    ERR_FILE_NOT_FOUND("err-file-not-found", "No file named '%file%' was found in the plugin folder", LangType.NORMAL),
+    ERR_INVALID_FILE("err-invalid-file", "'%file%' is not a file inside the plugin folder", LangType.NORMAL),
     ERR_NO_BLOCK("err-no-block", "Unable to fin a target block", LangType.NORMAL),
     ERR_NO_CRATE_FOUND("err-no-crate-found", "No crate was found here", LangType.NORMAL),
     ERR_NOT_ENOUGH_PULLS("err-not-enough-pulls", "You don't have enough pulls to open this", LangType.NORMAL),
@@ -21,6 +23,8 @@ public enum Lang {
     ERR_PLAYER_OFFLINE("err-player-offline", "%player% is not online", LangType.NORMAL),
     ERR_MISSING_PERM("err-missing-perm", "You don't have permission to use this command", LangType.NORMAL),
     ERR_UNKNOWN_CRATE("err-unknown-crate", "No crate named '%crate%' was found", LangType.NORMAL),
+    ERR_TRANSFER_FAILED("err-transfer-failed", "Player data transfer failed: %error%", LangType.NORMAL),
+    ERR_TRANSFER_RUNNING("err-transfer-running", "A player data import or export is already running", LangType.NORMAL),
     ERR_UNKNOWN("err-unknown", "An unknown error has occurred", LangType.NORMAL),
 
     CRATE_CONFIRM_DELETE("crate-confirm-delete", "Confirm deletion of crate &a%crate% &fby breaking again within &a3s", LangType.NORMAL),
@@ -35,6 +39,13 @@ public enum Lang {
     CRATE_TAKEN("crate-taken", "Took &a%amount%x %crate% &fpulls from &a%player%", LangType.NORMAL),
     CRATE_USAGE("crate-usage", LangType.LONG),
 
+    DELIVERY_QUEUE_STATUS("delivery-queue-status", "Reward queue: &a%depth% &fdeliveries for &a%players% &fplayers, latency &a%avg-latency%ms &favg, &a%max-latency%ms &fmax", LangType.NORMAL),
+
+    TRANSFER_EXPORTED("transfer-exported", "Exported &a%count% &fplayers to &a%file%", LangType.NORMAL),
+    TRANSFER_IMPORTED("transfer-imported", "Imported &a%count% &fplayers from &a%file%&f, skipped &a%skipped% &fthat were making a wish", LangType.NORMAL),
+    TRANSFER_PROGRESS("transfer-progress", "Transferred &a%count% &fplayers so far", LangType.NORMAL),
+    TRANSFER_STARTED("transfer-started", "Transferring players with &a%file%&f, progress will be reported here", LangType.NORMAL),
+
     PITY_TRACKER_FORMAT("pity-tracker-format", "&f  %pity-count%&7/&8%pity-limit% &7%reward-tier%", LangType.NORMAL),
     PULL_LIST_FORMAT("pull-list-format", "&a  %crate%&7: &f%pull-count%", LangType.NORMAL),
     TIER_RATE_FORMAT("tier-rate-format", "&a  %reward-tier% &7%rate%%", LangType.NORMAL),
@@ -31,7 +31,8 @@ public class CrateListener implements Listener {
     public void onInteract(PlayerInteractEvent e) {
         Block clickedBlock = e.getClickedBlock();
 
-        if (e.getAction() != Action.RIGHT_CLICK_BLOCK || clickedBlock == null) {
+        if (e.getAction() != Action.RIGHT_CLICK_BLOCK || clickedBlock == null
+                || !plugin.getCrateCache().hasCrateInChunk(clickedBlock.getWorld(), clickedBlock.getX() >> 4, clickedBlock.getZ() >> 4)) {
             return;
         }
         Optional<Crate> crate = plugin.getCrateCache().getCrate(clickedBlock.getLocation());
@@ -73,6 +74,11 @@ public class CrateListener implements Listener {
     @EventHandler
     public void onBreak(BlockBreakEvent e) {
         Block block = e.getBlock();
+
+        // Almost every block broken is nowhere near a crate
+        if (!plugin.getCrateCache().hasCrateInChunk(block.getWorld(), block.getX() >> 4, block.getZ() >> 4)) {
+            return;
+        }
         Player player = e.getPlayer();
         Optional<Crate> crate = plugin.getCrateCache().getCrate(block.getLocation());
         HashMap<String, String> messageReplacements = new HashMap<>();
@@ -111,7 +117,7 @@ public class CrateListener implements Listener {
             return;
         }
 
-        crate.get().removeLocation(block.getLocation());
+        plugin.getCrateCache().removeLocation(crate.get(), block.getLocation());
         Lang.CRATE_LOCATION_REMOVED.send(player, messageReplacements);
     }
 
@@ -4,6 +4,7 @@ import imperatrix.wish.Wish;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 public class PlayerListener implements Listener {
     private final Wish plugin;
@@ -17,4 +18,10 @@ public class PlayerListener implements Listener {
         // Ensure player data is loaded on join
         plugin.getPlayerCache().getPlayer(e.getPlayer().getUniqueId());
     }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        plugin.getPlayerCache().handleQuit(e.getPlayer().getUniqueId());
+        plugin.getPlaceholderCache().invalidate(e.getPlayer().getUniqueId());
+    }
 }
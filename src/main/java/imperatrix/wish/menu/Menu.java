@@ -4,8 +4,10 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.inventory.ItemStack;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 
 public abstract class Menu {
     private final String menuID;
@@ -14,6 +16,21 @@ public abstract class Menu {
         this.menuID = menuID;
     }
 
+    /**
+     * Create the contents of a menu filled with one item, the static layout is put on top of it once at load so
+     * opening the menu only has to copy the array
+     *
+     * @param size The inventory size
+     * @param backgroundItem The item in every slot
+     * @return ItemStack array of the given size
+     */
+    protected static ItemStack[] createTemplate(int size, ItemStack backgroundItem) {
+        ItemStack[] template = new ItemStack[size];
+
+        Arrays.fill(template, backgroundItem);
+        return template;
+    }
+
     public String getMenuID() {
         return menuID;
     }
@@ -29,10 +29,12 @@ public class CrateMenu extends Menu {
     private ItemStack backgroundItem = new ItemBuilder(Material.WHITE_STAINED_GLASS_PANE).setDisplayName("&7").build();
     private ItemStack pullItem = new ItemBuilder(Material.NETHER_STAR).setDisplayName("&e&lPull").build();
     private ItemStack rewardsItem = new ItemBuilder(Material.AMETHYST_CLUSTER).setDisplayName("&e&lRewards").build();
+    private ItemStack[] template; // Everything but the pull item
 
     public CrateMenu(Wish plugin) {
         super("crate");
         this.plugin = plugin;
+        buildTemplate();
     }
 
     @Override
@@ -48,6 +50,7 @@ public class CrateMenu extends Menu {
                 "NETHER_STAR name:&e&lPull lore:&f&l%pull-count%_&7pulls_remaining|&7Click_to_&f&lpull"));
         rewardsItem = Utils.decodeItem(configurationSection.getString("Rewards-Menu-Item",
                 "AMETHYST_CLUSTER name:&e&lRewards lore:&7Click_to_view_&frewards_&7and_your_&fpity_tracker"));
+        buildTemplate();
     }
 
     @Override
@@ -61,15 +64,12 @@ public class CrateMenu extends Menu {
         Crate crate = crateSession.getCrate();
         GachaPlayer gachaPlayer = plugin.getPlayerCache().getPlayer(player.getUniqueId());
         Inventory inventory = Bukkit.createInventory(null, 27, title.replace("%crate%", crate.getName()));
+        ItemStack[] contents = template.clone();
         HashMap<String, String> variables = new HashMap<>();
 
-        for (int i = 0; i < inventory.getSize(); i++) {
-            inventory.setItem(i, backgroundItem);
-        }
-
         variables.put("%pull-count%", Integer.toString(gachaPlayer.getAvailablePulls(crate)));
-        inventory.setItem(11, new ItemBuilder(pullItem.clone()).setVariables(variables).build());
-        inventory.setItem(15, rewardsItem);
+        contents[11] = new ItemBuilder(pullItem.clone()).setVariables(variables).build();
+        inventory.setContents(contents);
         offhandSnapshotMap.put(player.getUniqueId(), player.getInventory().getItemInOffHand());
         player.openInventory(inventory);
         plugin.getMenuManager().setActiveMenu(player.getUniqueId(), this);
@@ -115,6 +115,11 @@ public class CrateMenu extends Menu {
         }
     }
 
+    private void buildTemplate() {
+        template = createTemplate(27, backgroundItem);
+        template[15] = rewardsItem;
+    }
+
     @Override
     public void processClose(InventoryCloseEvent e) {
         Player player = (Player) e.getPlayer();
@@ -8,6 +8,7 @@ import imperatrix.wish.struct.*; // Assuming GachaPlayer is here
 import imperatrix.wish.struct.crate.Crate; // May not be needed directly in methods if data comes from session
 import imperatrix.wish.struct.crate.CrateOpenPhase;
 import imperatrix.wish.struct.crate.CrateSession;
+import imperatrix.wish.struct.crate.PullResult;
 import imperatrix.wish.struct.reward.Reward;
 import imperatrix.wish.struct.reward.RewardTier;
 import imperatrix.wish.util.ItemBuilder;
@@ -25,7 +26,6 @@ import org.bukkit.scheduler.BukkitRunnable;
 
 import javax.annotation.Nullable;
 import java.util.HashMap;
-import java.util.List; // Added for new open() method parameters
 import java.util.UUID;
 
 public class CrateOpenMenu extends Menu {
@@ -58,7 +58,7 @@ public class CrateOpenMenu extends Menu {
     /**
      * This open method is a placeholder and should not be called directly
      * for the INTERFACE animation after Crate.java changes.
-     * The new open method with List parameters should be used by Crate.java.
+     * The open method taking a PullResult should be used by Crate.java.
      */
     @Override
     public void open(Player player) {
@@ -75,18 +75,17 @@ public class CrateOpenMenu extends Menu {
      *
      * @param gachaPlayer The player opening the crate.
      * @param crateSession The current crate session.
-     * @param pullCount The number of items being pulled.
-     * @param obtainedRewardTiers The list of RewardTier objects obtained (for display purposes).
-     * @param obtainedRewards The list of actual Reward objects obtained.
+     * @param pullResult The batch of pulls rolled for this opening.
      */
-    public void open(GachaPlayer gachaPlayer, CrateSession crateSession, int pullCount, List<RewardTier> obtainedRewardTiers, List<Reward> obtainedRewards) {
+    public void open(GachaPlayer gachaPlayer, CrateSession crateSession, PullResult pullResult) {
         Player player = gachaPlayer.getPlayer();
         if (player == null || !player.isOnline()) {
             Bukkit.getLogger().warning("[Wish] Attempted to open CrateOpenMenu for an offline or null player: " + gachaPlayer.getUuid());
             return;
         }
-        if (obtainedRewardTiers == null || obtainedRewards == null || obtainedRewardTiers.size() != pullCount || obtainedRewards.size() != pullCount) {
-            Bukkit.getLogger().severe("[Wish] Mismatch in pullCount and obtained rewards/tiers lists for CrateOpenMenu. Crate: " + crateSession.getCrate().getName() + " Player: " + player.getName());
+        int pullCount = pullResult.size();
+        if (pullCount == 0) {
+            Bukkit.getLogger().severe("[Wish] No pulls were rolled for CrateOpenMenu. Crate: " + crateSession.getCrate().getName() + " Player: " + player.getName());
             Lang.ERR_UNKNOWN.send(player);
             player.closeInventory();
             return;
@@ -130,8 +129,8 @@ public class CrateOpenMenu extends Menu {
                 if (!player.getOpenInventory().getTopInventory().equals(inventory)) { // Stop if player closes menu early
                     if (crateSession.getOpenPhase() == CrateOpenPhase.OPENING) { // If animation was interrupted
                         // Give rewards directly if menu closed during animation to prevent loss
-                        for (Reward reward : obtainedRewards) {
-                            reward.execute(player);
+                        for (int i = 0; i < pullCount; i++) {
+                            plugin.getDeliveryQueue().enqueue(player, crateSession.getCrate(), pullResult.getReward(i));
                         }
                         plugin.getSessionManager().clearSession(player.getUniqueId());
                     }
@@ -139,13 +138,13 @@ public class CrateOpenMenu extends Menu {
                     return;
                 }
 
-                if (counter >= pullCount || counter >= obtainedRewardTiers.size()) {
+                if (counter >= pullCount) {
                     crateSession.setOpenPhase(CrateOpenPhase.COMPLETE);
                     cancel();
                     return;
                 }
 
-                RewardTier rewardTierForDisplay = obtainedRewardTiers.get(counter);
+                RewardTier rewardTierForDisplay = pullResult.getRewardTier(counter);
                 if (counter < inventory.getSize()) {
                     inventory.setItem(counter, rewardTierForDisplay.getDisplayItem());
                 }
@@ -156,8 +155,8 @@ public class CrateOpenMenu extends Menu {
 
         // Set the final rewards in the CrateSession for processClick and processClose logic
         HashMap<Integer, Reward> finalRewardsMapForSession = new HashMap<>();
-        for (int i = 0; i < pullCount && i < obtainedRewards.size(); i++) {
-            finalRewardsMapForSession.put(i, obtainedRewards.get(i));
+        for (int i = 0; i < pullCount; i++) {
+            finalRewardsMapForSession.put(i, pullResult.getReward(i));
         }
         crateSession.setRewards(finalRewardsMapForSession);
         crateSession.setOpenPhase(CrateOpenPhase.OPENING);
@@ -255,7 +254,7 @@ public class CrateOpenMenu extends Menu {
             }
             for (Reward reward : crateSession.getRewards()) {
                 if (reward != null) { // Ensure reward object is not null
-                    reward.execute(player);
+                    plugin.getDeliveryQueue().enqueue(player, crateSession.getCrate(), reward);
                 } else {
                     Bukkit.getLogger().warning("[Wish] A null reward was encountered in CrateSession for " + player.getName() + ".");
                 }
@@ -38,10 +38,12 @@ public class PullMenu extends Menu {
     private ItemStack backItem = new ItemBuilder(Material.RED_STAINED_GLASS_PANE).setDisplayName("&cBack").build();
     private ItemStack maxPullCountItem = new ItemBuilder(Material.RED_STAINED_GLASS_PANE).setDisplayName("&cMaximum Pull Count Reached").build();
     private ItemStack minPullCountItem = new ItemBuilder(Material.RED_STAINED_GLASS_PANE).setDisplayName("&cMinimum Pull Count Reached").build();
+    private ItemStack[] template; // The whole menu as it opens, every pull count starts at 1
 
     public PullMenu(Wish plugin) {
         super("pull");
         this.plugin = plugin;
+        buildTemplate();
     }
 
     @Override
@@ -69,26 +71,14 @@ public class PullMenu extends Menu {
                 "RED_STAINED_GLASS_PANE name:&cMaximum_Pull_Count_Reached lore:&7Can_no_longer_increase_pull_count"));
         minPullCountItem = Utils.decodeItem(configurationSection.getString("Min-Pull-Count-Item",
                 "RED_STAINED_GLASS_PANE name:&cMinimum_Pull_Count_Reached lore:&7Can_no_longer_decrease_pull_count"));
+        buildTemplate();
     }
 
     @Override
     public void open(Player player) {
         Inventory inventory = Bukkit.createInventory(null, 27, title);
 
-        for (int i = 0; i < inventory.getSize(); i++) {
-            inventory.setItem(i, backgroundItem);
-        }
-        HashMap<String, String> variableMap = new HashMap<>();
-
-        variableMap.put("%pull-count%", "1");
-        ItemBuilder pullCountItemBuilder = new ItemBuilder(pullCountItem.clone()).setVariables(variableMap);
-
-        inventory.setItem(4, pullCountItemBuilder.build());
-        inventory.setItem(12, decreasePullCountItem);
-        inventory.setItem(13, increasePullCountItem);
-        inventory.setItem(14, maxPullCountSelectorItem);
-        inventory.setItem(18, backItem);
-        inventory.setItem(26, pullItem);
+        inventory.setContents(template.clone());
         offhandSnapshotMap.put(player.getUniqueId(), player.getInventory().getItemInOffHand());
         player.openInventory(inventory);
         plugin.getMenuManager().setActiveMenu(player.getUniqueId(), this);
@@ -206,6 +196,19 @@ public class PullMenu extends Menu {
         plugin.getMenuManager().clearActiveMenu(player.getUniqueId());
     }
 
+    private void buildTemplate() {
+        HashMap<String, String> variableMap = new HashMap<>();
+
+        variableMap.put("%pull-count%", "1");
+        template = createTemplate(27, backgroundItem);
+        template[4] = new ItemBuilder(pullCountItem.clone()).setVariables(variableMap).build();
+        template[12] = decreasePullCountItem;
+        template[13] = increasePullCountItem;
+        template[14] = maxPullCountSelectorItem;
+        template[18] = backItem;
+        template[26] = pullItem;
+    }
+
     private void updatePullCountItem(Player player, int pullCount) {
         HashMap<String, String> variableMap = new HashMap<>();
 
@@ -36,10 +36,13 @@ public class RewardsMenu extends Menu {
     private ItemStack pityItem = new ItemBuilder(Material.NETHER_STAR).setDisplayName("&ePity Tracker").build();
     private ItemStack rateItem = new ItemBuilder(Material.DARK_OAK_SIGN).setDisplayName("&eReward Tier Rates").build();
     private final HashMap<UUID, Integer> pageMap = new HashMap<>();
+    private ItemStack[] template; // Background, border row and back button
+    private final HashMap<UUID, ItemStack[][]> cratePages = new HashMap<>(); // Every page of each crate, all but the pity item
 
     public RewardsMenu(Wish plugin) {
         super("rewards");
         this.plugin = plugin;
+        buildTemplate();
     }
 
     @Override
@@ -65,6 +68,11 @@ public class RewardsMenu extends Menu {
         rateItem = Utils.decodeItem(configurationSection.getString("Rate-Item",
                 "DARK_OAK_SIGN name:&e&lReward_Tier_Rates " +
                         "lore:%rate-list%"));
+        buildTemplate();
+
+        for (Crate crate : plugin.getCrateCache().getCrates()) {
+            getPages(crate);
+        }
     }
 
     @Override
@@ -76,79 +84,26 @@ public class RewardsMenu extends Menu {
     public void open(Player player, int page) {
         CrateSession crateSession = plugin.getSessionManager().getCrateSession(player.getUniqueId());
         GachaPlayer gachaPlayer = plugin.getPlayerCache().getPlayer(player.getUniqueId());
-        Inventory inventory = Bukkit.createInventory(null, 54, title);
-        int counter = 0;
 
         if (crateSession == null) {
             player.closeInventory();
             Lang.ERR_UNKNOWN.send(player);
             return;
         }
-
-        for (int i = 0; i < inventory.getSize(); i++) {
-            inventory.setItem(i, backgroundItem);
-        }
-
-        for (int i = 36; i < 45; i++) {
-            inventory.setItem(i, borderItem);
-        }
-
-        if (page > 1) {
-            inventory.setItem(36, previousPageItem);
-        }
-
-        for (Reward reward : crateSession.getCrate().getAllRewards()) {
-            counter++;
-
-            if (counter < (page - 1) * 36) {
-                continue;
-            }
-
-            if (counter > 36) {
-                inventory.setItem(44, nextPageItem);
-                break;
-            }
-
-            inventory.setItem(counter - 1, reward.getDisplayItem());
-        }
+        ItemStack[][] pages = getPages(crateSession.getCrate());
+        page = Math.max(1, Math.min(page, pages.length));
+        Inventory inventory = Bukkit.createInventory(null, 54, title);
+        ItemStack[] contents = pages[page - 1].clone();
         ItemStack newPityItem = pityItem.clone();
-        ItemStack newRateItem = rateItem.clone();
         ItemMeta itemMeta = newPityItem.getItemMeta();
 
         if (itemMeta != null && itemMeta.getLore() != null) {
-            List<String> lore = new ArrayList<>();
-
-            itemMeta.getLore().forEach((l) -> {
-                if (l.contains("%pity-list%")) {
-                    lore.addAll(getPityList(gachaPlayer, crateSession.getCrate()));
-                } else {
-                    lore.add(l);
-                }
-            });
-
-            itemMeta.setLore(lore);
+            itemMeta.setLore(replaceLine(itemMeta.getLore(), "%pity-list%", getPityList(gachaPlayer, crateSession.getCrate())));
             newPityItem.setItemMeta(itemMeta);
         }
 
-        itemMeta = newRateItem.getItemMeta();
-        if (itemMeta != null && itemMeta.getLore() != null) {
-            List<String> lore = new ArrayList<>();
-
-            itemMeta.getLore().forEach((l) -> {
-                if (l.contains("%rate-list%")) {
-                    lore.addAll(getRateList(crateSession.getCrate()));
-                } else {
-                    lore.add(l);
-                }
-            });
-
-            itemMeta.setLore(lore);
-            newRateItem.setItemMeta(itemMeta);
-        }
-
-        inventory.setItem(45, backItem);
-        inventory.setItem(49, newPityItem);
-        inventory.setItem(53, newRateItem);
+        contents[49] = newPityItem;
+        inventory.setContents(contents);
         offhandSnapshotMap.put(player.getUniqueId(), player.getInventory().getItemInOffHand());
         player.openInventory(inventory);
         pageMap.put(player.getUniqueId(), page);
@@ -178,12 +133,12 @@ public class RewardsMenu extends Menu {
             return;
         }
 
-        if (e.getSlot() == 52 && Objects.requireNonNull(e.getCurrentItem()).isSimilar(previousPageItem)) {
+        if (e.getSlot() == 36 && e.getCurrentItem() != null && e.getCurrentItem().isSimilar(previousPageItem)) {
             open(player, pageMap.getOrDefault(player.getUniqueId(), 2) - 1);
             return;
         }
 
-        if (e.getSlot() == 53 && Objects.requireNonNull(e.getCurrentItem()).isSimilar(nextPageItem)) {
+        if (e.getSlot() == 44 && e.getCurrentItem() != null && e.getCurrentItem().isSimilar(nextPageItem)) {
             open(player, pageMap.getOrDefault(player.getUniqueId(), 1) + 1);
         }
     }
@@ -199,8 +154,65 @@ public class RewardsMenu extends Menu {
         plugin.getMenuManager().clearActiveMenu(player.getUniqueId());
     }
 
+    private void buildTemplate() {
+        template = createTemplate(54, backgroundItem);
+        Arrays.fill(template, 36, 45, borderItem);
+        template[45] = backItem;
+        cratePages.clear();
+    }
+
+    /**
+     * Retrieve the pages of a crate's rewards, 36 rewards to a page, built the first time they are needed
+     */
+    private ItemStack[][] getPages(Crate crate) {
+        ItemStack[][] pages = cratePages.get(crate.getUuid());
+
+        if (pages != null) {
+            return pages;
+        }
+        List<Reward> rewards = new ArrayList<>(crate.getAllRewards());
+        ItemStack rateItem = this.rateItem.clone();
+        ItemMeta itemMeta = rateItem.getItemMeta();
+
+        if (itemMeta != null && itemMeta.getLore() != null) {
+            itemMeta.setLore(replaceLine(itemMeta.getLore(), "%rate-list%", getRateList(crate)));
+            rateItem.setItemMeta(itemMeta);
+        }
+        pages = new ItemStack[Math.max(1, (rewards.size() + 35) / 36)][];
+
+        for (int page = 0; page < pages.length; page++) {
+            ItemStack[] contents = template.clone();
+
+            for (int slot = 0; slot < 36 && page * 36 + slot < rewards.size(); slot++) {
+                contents[slot] = rewards.get(page * 36 + slot).getDisplayItem();
+            }
+            if (page > 0) {
+                contents[36] = previousPageItem;
+            }
+            if (page < pages.length - 1) {
+                contents[44] = nextPageItem;
+            }
+            contents[53] = rateItem;
+            pages[page] = contents;
+        }
+        cratePages.put(crate.getUuid(), pages);
+        return pages;
+    }
+
+    private static List<String> replaceLine(List<String> lore, String placeholder, List<String> lines) {
+        List<String> newLore = new ArrayList<>();
+
+        for (String line : lore) {
+            if (line.contains(placeholder)) {
+                newLore.addAll(lines);
+            } else {
+                newLore.add(line);
+            }
+        }
+        return newLore;
+    }
+
     private List<String> getPityList(GachaPlayer gachaPlayer, Crate crate) {
-        HashMap<RewardTier, Integer> pityMap = gachaPlayer.getPityMap(crate);
         List<String> pityList = new ArrayList<>();
 
         for (RewardTier rewardTier : crate.getRewardTiers()) {
@@ -210,7 +222,7 @@ public class RewardsMenu extends Menu {
 
             pityList.add(Lang.PITY_TRACKER_FORMAT.toString(false)
                     .replace("%reward-tier%", rewardTier.getName())
-                    .replace("%pity-count%", Integer.toString(pityMap.getOrDefault(rewardTier, 0)))
+                    .replace("%pity-count%", Integer.toString(gachaPlayer.getPity(crate, rewardTier)))
                     .replace("%pity-limit%", Integer.toString(rewardTier.getPityLimit())));
         }
 
@@ -228,7 +240,7 @@ public class RewardsMenu extends Menu {
 
             rateList.add(Lang.TIER_RATE_FORMAT.toString(false)
                     .replace("%reward-tier%", rewardTier.getName())
-                    .replace("%rate%", decimalFormat.format(crate.getChance(rewardTier))));
+                    .replace("%rate%", decimalFormat.format(crate.getChance(rewardTier) * 100))); // Chances are stored as fractions
         }
 
         return rateList;
@@ -0,0 +1,357 @@
+package imperatrix.wish.sim;
+
+import imperatrix.wish.cache.CrateCache;
+import imperatrix.wish.cache.RngProvider;
+import imperatrix.wish.struct.crate.Crate;
+import imperatrix.wish.struct.crate.PullResult;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless Monte Carlo simulator for crates.yml. Crates are loaded through the same loadFrom logic and rolled
+ * through the same roll engine as on a live server, so pity and both featured banner types behave identically.
+ * <p>
+ * Usage: {@code mvn -Psimulate compile exec:java -Dexec.args="<crates.yml> [crate] [pulls] [players] [seed]"}
+ * <p>
+ * With {@code --replay} it instead re-rolls a single logged crate opening, see Log-Rng-Streams in config.yml
+ */
+public class CrateSimulator {
+    private static final int BATCH_SIZE = 1024;
+    private static final int PLAYERS_PER_TASK = 4;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--replay")) {
+            replay(args);
+            return;
+        }
+
+        if (args.length < 1) {
+            System.out.println("Usage: CrateSimulator <crates.yml> [crate] [pulls, default 100000000] [players, default 10000] [seed]");
+            System.out.println("       CrateSimulator --replay <crates.yml> <crate> <seed> <player uuid> <stream> <pulls> <state>");
+            return;
+        }
+        File cratesFile = new File(args[0]);
+
+        if (!cratesFile.isFile()) {
+            System.out.println("Could not find crates file " + cratesFile.getAbsolutePath());
+            return;
+        }
+        String crateName = args.length > 1 && !args[1].equals("*") ? args[1] : null;
+        long pulls = args.length > 2 ? Long.parseLong(args[2].replace("_", "")) : 100_000_000L;
+        int players = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        CrateCache crateCache = new CrateCache();
+        crateCache.loadFrom(YamlConfiguration.loadConfiguration(cratesFile));
+        List<Crate> crates = new ArrayList<>();
+
+        if (crateName == null) {
+            crates.addAll(crateCache.getCrates());
+        } else {
+            crateCache.getCrate(crateName).ifPresentOrElse(crates::add, () -> System.out.println("Could not find crate " + crateName));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            for (Crate crate : crates) {
+                if (crate.getRewardTierCount() == 0) {
+                    System.out.println("Skipping " + crate.getName() + ", it has no reward tiers");
+                    continue;
+                }
+                long start = System.nanoTime();
+                SimulationStats stats = pool.invoke(new SimulationTask(crate, seed, 0, players, Math.max(1, pulls / players)));
+
+                stats.print(crate, (System.nanoTime() - start) / 1_000_000_000.0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Re-roll one crate opening from what Log-Rng-Streams logged. The server seed, player and stream counter give
+     * the same random stream as on the server, and the logged state gives the pity and 50/50 guarantee it started from.
+     */
+    private static void replay(String[] args) {
+        if (args.length < 8) {
+            System.out.println("Usage: CrateSimulator --replay <crates.yml> <crate> <seed> <player uuid> <stream> <pulls> <state>");
+            return;
+        }
+        File cratesFile = new File(args[1]);
+
+        if (!cratesFile.isFile()) {
+            System.out.println("Could not find crates file " + cratesFile.getAbsolutePath());
+            return;
+        }
+        CrateCache crateCache = new CrateCache();
+        crateCache.loadFrom(YamlConfiguration.loadConfiguration(cratesFile));
+        Crate crate = crateCache.getCrate(args[2]).orElse(null);
+
+        if (crate == null) {
+            System.out.println("Could not find crate " + args[2]);
+            return;
+        }
+        int pulls = Integer.parseInt(args[6]);
+        String[] state = args[7].split("/");
+        String[] tierPity = state[0].split(",");
+
+        if (state.length != 2 || tierPity.length != crate.getRewardTierCount()) {
+            System.out.println("State " + args[7] + " does not match the " + crate.getRewardTierCount() + " reward tiers of " + crate.getName());
+            return;
+        }
+        int[] pity = Arrays.stream(tierPity).mapToInt(Integer::parseInt).toArray();
+        PullResult pullResult = new PullResult(crate, pulls);
+
+        pullResult.setNext5StarGuaranteed(Boolean.parseBoolean(state[1]));
+        crate.roll(pity, pulls, RngProvider.createStream(Long.parseLong(args[3]), UUID.fromString(args[4]), Long.parseLong(args[5])), pullResult);
+
+        System.out.printf("%-6s %-20s %-24s %s%n", "Pull", "Tier", "Reward", "Flags");
+        for (int i = 0; i < pullResult.size(); i++) {
+            System.out.printf("%-6d %-20s %-24s %s%n", i + 1, pullResult.getRewardTier(i).getName(), pullResult.getReward(i).getName(), flags(pullResult.getFlags(i)));
+        }
+        System.out.println("Ends in state " + Arrays.stream(pity).mapToObj(String::valueOf).reduce((a, b) -> a + "," + b).orElse("")
+                + "/" + pullResult.isNext5StarGuaranteed());
+    }
+
+    private static String flags(int flags) {
+        List<String> names = new ArrayList<>();
+
+        if ((flags & PullResult.PITY) != 0) {
+            names.add("pity");
+        }
+        if ((flags & PullResult.FEATURED) != 0) {
+            names.add("featured");
+        }
+        if ((flags & PullResult.LOST_5050) != 0) {
+            names.add("lost 50/50");
+        }
+        if ((flags & PullResult.GUARANTEED) != 0) {
+            names.add("guaranteed");
+        }
+        return String.join(", ", names);
+    }
+
+    /**
+     * Simulates a range of independent players, each pulling from a fresh state. Every player gets a stream
+     * derived from the seed and its own index, so results do not depend on how the work is split across cores.
+     */
+    private static class SimulationTask extends RecursiveTask<SimulationStats> {
+        private final Crate crate;
+        private final long seed;
+        private final int firstPlayer;
+        private final int lastPlayer;
+        private final long pullsPerPlayer;
+
+        private SimulationTask(Crate crate, long seed, int firstPlayer, int lastPlayer, long pullsPerPlayer) {
+            this.crate = crate;
+            this.seed = seed;
+            this.firstPlayer = firstPlayer;
+            this.lastPlayer = lastPlayer;
+            this.pullsPerPlayer = pullsPerPlayer;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (lastPlayer - firstPlayer > PLAYERS_PER_TASK) {
+                int middle = (firstPlayer + lastPlayer) >>> 1;
+                SimulationTask left = new SimulationTask(crate, seed, firstPlayer, middle, pullsPerPlayer);
+                SimulationTask right = new SimulationTask(crate, seed, middle, lastPlayer, pullsPerPlayer);
+
+                left.fork();
+                SimulationStats stats = right.compute();
+                stats.merge(left.join());
+                return stats;
+            }
+            SimulationStats stats = new SimulationStats(crate);
+
+            for (int player = firstPlayer; player < lastPlayer; player++) {
+                simulatePlayer(stats, new SplittableRandom(seed ^ (player * 0x9E3779B97F4A7C15L)));
+            }
+            return stats;
+        }
+
+        private void simulatePlayer(SimulationStats stats, SplittableRandom random) {
+            int[] pity = new int[crate.getRewardTierCount()];
+            PullResult pullResult = new PullResult(crate, BATCH_SIZE);
+            int featuredTierIndex = stats.featuredTierIndex;
+            int sinceTopTier = 0;
+            int sinceFeatured = 0;
+
+            for (long remaining = pullsPerPlayer; remaining > 0; remaining -= BATCH_SIZE) {
+                pullResult.clear();
+                crate.roll(pity, (int) Math.min(BATCH_SIZE, remaining), random, pullResult);
+
+                for (int i = 0; i < pullResult.size(); i++) {
+                    int tierIndex = pullResult.getTierIndex(i);
+                    int flags = pullResult.getFlags(i);
+
+                    stats.pulls++;
+                    stats.tierHits[tierIndex]++;
+                    sinceTopTier++;
+                    sinceFeatured++;
+
+                    if ((flags & PullResult.PITY) != 0) {
+                        stats.pityHits[tierIndex]++;
+                    }
+                    if (tierIndex == stats.topTierIndex) {
+                        stats.topTierGaps.add(sinceTopTier);
+                        sinceTopTier = 0;
+                    }
+                    if (tierIndex != featuredTierIndex) {
+                        continue;
+                    }
+
+                    if ((flags & PullResult.GUARANTEED) != 0) {
+                        stats.guaranteed++;
+                    } else if ((flags & PullResult.LOST_5050) != 0) {
+                        stats.lost5050++;
+                    } else if ((flags & PullResult.FEATURED) != 0) {
+                        stats.won5050++;
+                    }
+                    if ((flags & PullResult.FEATURED) != 0) {
+                        stats.featuredGaps.add(sinceFeatured);
+                        sinceFeatured = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counters of a run, merged together once every task is done
+     */
+    private static class SimulationStats {
+        private final int topTierIndex;
+        private final int featuredTierIndex;
+        private final long[] tierHits;
+        private final long[] pityHits;
+        private final Histogram topTierGaps = new Histogram();
+        private final Histogram featuredGaps = new Histogram();
+        private long pulls = 0;
+        private long won5050 = 0;
+        private long lost5050 = 0;
+        private long guaranteed = 0;
+
+        private SimulationStats(Crate crate) {
+            this.featuredTierIndex = crate.getFeaturedTierIndex();
+            // Tiers are sorted by chance, the rarest sits at index 0
+            this.topTierIndex = featuredTierIndex == -1 ? 0 : featuredTierIndex;
+            this.tierHits = new long[crate.getRewardTierCount()];
+            this.pityHits = new long[crate.getRewardTierCount()];
+        }
+
+        private void merge(SimulationStats other) {
+            for (int i = 0; i < tierHits.length; i++) {
+                tierHits[i] += other.tierHits[i];
+                pityHits[i] += other.pityHits[i];
+            }
+            topTierGaps.merge(other.topTierGaps);
+            featuredGaps.merge(other.featuredGaps);
+            pulls += other.pulls;
+            won5050 += other.won5050;
+            lost5050 += other.lost5050;
+            guaranteed += other.guaranteed;
+        }
+
+        private void print(Crate crate, double seconds) {
+            System.out.println();
+            System.out.printf("=== %s: %,d pulls in %.2fs (%,.0f pulls/s) ===%n", crate.getName(), pulls, seconds, pulls / seconds);
+            System.out.printf("%-20s %10s %10s %12s%n", "Tier", "Rate", "Pity-hit", "Pulls/hit");
+
+            for (int i = crate.getRewardTierCount() - 1; i >= 0; i--) {
+                System.out.printf("%-20s %9.4f%% %9.2f%% %12.2f%n", crate.getRewardTier(i).getName(),
+                        percent(tierHits[i], pulls), percent(pityHits[i], tierHits[i]), tierHits[i] == 0 ? 0.0 : (double) pulls / tierHits[i]);
+            }
+
+            System.out.println();
+            System.out.printf("Expected pulls per %s: %.2f (p50 %d, p90 %d, p99 %d)%n", crate.getRewardTier(topTierIndex).getName(),
+                    topTierGaps.mean(), topTierGaps.percentile(0.5), topTierGaps.percentile(0.9), topTierGaps.percentile(0.99));
+
+            if (featuredTierIndex == -1) {
+                return;
+            }
+
+            if (crate.isLimited5050Banner()) {
+                long rolled = won5050 + lost5050;
+                System.out.printf("50/50 win rate: %.2f%% (%,d won, %,d lost, %,d guaranteed)%n", percent(won5050, rolled), won5050, lost5050, guaranteed);
+            }
+            System.out.printf("Expected pulls per featured reward: %.2f (p50 %d, p90 %d, p99 %d)%n",
+                    featuredGaps.mean(), featuredGaps.percentile(0.5), featuredGaps.percentile(0.9), featuredGaps.percentile(0.99));
+            System.out.println("Pulls-to-featured distribution (pulls, share, cumulative):");
+            featuredGaps.print();
+        }
+
+        private static double percent(long part, long total) {
+            return total == 0 ? 0.0 : part * 100.0 / total;
+        }
+    }
+
+    /**
+     * Counts how often each gap length occurs, growing as longer gaps show up
+     */
+    private static class Histogram {
+        private long[] counts = new long[256];
+        private long total = 0;
+        private long sum = 0;
+
+        private void add(int value) {
+            if (value >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length * 2));
+            }
+            counts[value]++;
+            total++;
+            sum += value;
+        }
+
+        private void merge(Histogram other) {
+            if (other.counts.length > counts.length) {
+                counts = Arrays.copyOf(counts, other.counts.length);
+            }
+
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            sum += other.sum;
+        }
+
+        private double mean() {
+            return total == 0 ? 0.0 : (double) sum / total;
+        }
+
+        private int percentile(double fraction) {
+            long target = (long) Math.ceil(total * fraction);
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+
+                if (seen >= target && seen > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        private void print() {
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                seen += counts[i];
+                System.out.printf("%6d %9.4f%% %9.4f%%%n", i, counts[i] * 100.0 / total, seen * 100.0 / total);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.file.PlayerJournal;
+import imperatrix.wish.struct.PlayerSnapshot;
+import imperatrix.wish.util.Utils;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps every player in data.bin, encoded with {@link PlayerStateCodec}. Like data.yml the whole file is read on
+ * startup and rewritten on every save, but both take a fraction of the time and space.
+ */
+public class BinaryPlayerStorage implements PlayerStorage {
+    private final File file;
+    private final LinkedHashMap<UUID, PlayerSnapshot> players = new LinkedHashMap<>(); // Guarded by this
+
+    public BinaryPlayerStorage(File file) throws IOException {
+        this.file = file;
+
+        if (file.isFile()) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                PlayerStateCodec.read(in, (snapshot) -> players.put(snapshot.uuid(), snapshot));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void forEach(Consumer<PlayerSnapshot> consumer) {
+        List<PlayerSnapshot> snapshots;
+
+        synchronized (this) {
+            snapshots = new ArrayList<>(players.values());
+        }
+        snapshots.forEach(consumer);
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return players.isEmpty();
+    }
+
+    @Override
+    public synchronized PlayerSnapshot load(UUID uuid) {
+        return players.get(uuid);
+    }
+
+    @Override
+    public void saveBatch(List<PlayerSnapshot> snapshots) throws IOException {
+        byte[] data;
+
+        synchronized (this) {
+            for (PlayerSnapshot snapshot : snapshots) {
+                players.put(snapshot.uuid(), snapshot);
+            }
+            data = encode();
+        }
+        Utils.writeAtomically(file.toPath(), data);
+    }
+
+    @Override
+    public synchronized void stageBatch(List<PlayerSnapshot> snapshots) {
+        for (PlayerSnapshot snapshot : snapshots) {
+            players.put(snapshot.uuid(), snapshot);
+        }
+    }
+
+    @Override
+    public void update(Consumer<PlayerJournal.Visitor> changes) throws IOException {
+        byte[] data;
+
+        synchronized (this) {
+            LinkedHashMap<UUID, PlayerSnapshot.Builder> builders = new LinkedHashMap<>();
+
+            changes.accept(new PlayerJournal.Visitor() {
+                @Override
+                public void guarantee(UUID playerUuid, UUID crateUuid, boolean guaranteed) {
+                    builder(playerUuid).guarantee(crateUuid, guaranteed);
+                }
+
+                @Override
+                public void pity(UUID playerUuid, UUID crateUuid, String tierName, int pity) {
+                    builder(playerUuid).pity(crateUuid, tierName, pity);
+                }
+
+                @Override
+                public void pulls(UUID playerUuid, UUID crateUuid, int pulls) {
+                    builder(playerUuid).pulls(crateUuid, pulls);
+                }
+
+                @Override
+                public void rngCounter(UUID playerUuid, long rngCounter) {
+                    builder(playerUuid).rngCounter(rngCounter);
+                }
+
+                private PlayerSnapshot.Builder builder(UUID playerUuid) {
+                    return builders.computeIfAbsent(playerUuid, (u) -> players.containsKey(u)
+                            ? PlayerSnapshot.Builder.from(players.get(u)) : new PlayerSnapshot.Builder(u));
+                }
+            });
+
+            if (builders.isEmpty()) {
+                return;
+            }
+            builders.forEach((uuid, builder) -> players.put(uuid, builder.build()));
+            data = encode();
+        }
+        Utils.writeAtomically(file.toPath(), data);
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(1024, players.size() * 64));
+        PlayerStateCodec.write(bytes, players.values());
+        return bytes.toByteArray();
+    }
+}
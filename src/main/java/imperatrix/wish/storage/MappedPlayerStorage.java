@@ -0,0 +1,606 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.file.PlayerJournal;
+import imperatrix.wish.struct.PlayerSnapshot;
+import imperatrix.wish.util.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps players as fixed-size records in a memory-mapped file, data.mmap. The records form an open addressing hash
+ * table keyed by player UUID, so loading a player reads one record in place and saving writes it straight into the
+ * page cache. Opening the file costs the same no matter how many players it holds.
+ * <p>
+ * The header holds a dictionary of crate UUIDs and, per crate, tier names. A record holds the player UUID, RNG
+ * counter, a CRC32 so a record torn by a crash is detected, bitmasks of the crates with state and of the 50/50
+ * guarantees, pulls per crate and pity per crate and tier. The masks take one long per 64 crates the header has
+ * room for. The records are mapped in regions of up to 1 GiB that never split a record, so the file is not bound
+ * by the 2 GiB a single mapping can hold. When the table gets too full, or a crate or tier does not fit the
+ * dictionary, the file is rebuilt with more room and swapped in. Loads keep reading the old file meanwhile.
+ */
+public class MappedPlayerStorage implements PlayerStorage {
+    private static final int MAGIC = 0x574D4150; // "WMAP"
+    private static final int VERSION = 2;
+    private static final int TIER_NAME_BYTES = 64; // Length byte plus up to 63 bytes of UTF-8
+    private static final double MAX_LOAD = 0.7;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long REGION_BYTES = 1L << 30;
+    private static final int FOR_EACH_SLOTS = 256; // Slots read per lock by forEach
+
+    // Header fields
+    private static final int H_CAPACITY = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_MAX_CRATES = 16;
+    private static final int H_MAX_TIERS = 20;
+    private static final int H_CRATE_COUNT = 24;
+    private static final int H_CRATES = 32;
+
+    // Record fields
+    private static final int R_RNG_COUNTER = 16;
+    private static final int R_CRC = 24;
+    private static final int R_MASKS = 32; // State, has guarantee and guarantee masks, maskWords longs each
+
+    // Masks
+    private static final int STATE_MASK = 0;
+    private static final int HAS_GUARANTEE_MASK = 1;
+    private static final int GUARANTEE_MASK = 2;
+
+    private final Path path;
+    private final Object writeLock = new Object(); // Held by saves and rebuilds, guards iterations
+    private final ReadWriteLock recordLock = new ReentrantReadWriteLock(); // Records and the dictionary are written under the write lock
+    private volatile Table table; // Only swapped by rebuilds, which hold writeLock
+    private int iterations = 0; // Running forEach calls, the table is not rebuilt under them
+
+    public MappedPlayerStorage(File file) throws IOException {
+        this.path = file.toPath();
+        this.table = Files.exists(path) ? Table.open(path) : Table.create(path, 1024, 8, 8);
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    /**
+     * Hand every stored player to a consumer, a range of slots at a time. The lock is only held while a range is
+     * read, so the consumer may be slow. Rebuilds wait until this returns, the consumer must not save players.
+     */
+    @Override
+    public void forEach(Consumer<PlayerSnapshot> consumer) {
+        List<PlayerSnapshot> snapshots = new ArrayList<>(FOR_EACH_SLOTS);
+        Table current;
+
+        synchronized (writeLock) {
+            iterations++;
+            current = table;
+        }
+
+        try {
+            for (int start = 0; start < current.capacity; start += FOR_EACH_SLOTS) {
+                recordLock.readLock().lock();
+                try {
+                    current.readRange(start, Math.min(current.capacity, start + FOR_EACH_SLOTS), snapshots);
+                } finally {
+                    recordLock.readLock().unlock();
+                }
+                snapshots.forEach(consumer);
+                snapshots.clear();
+            }
+        } finally {
+            synchronized (writeLock) {
+                iterations--;
+                writeLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        recordLock.readLock().lock();
+        try {
+            return table.count == 0;
+        } finally {
+            recordLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PlayerSnapshot load(UUID uuid) throws IOException {
+        recordLock.readLock().lock();
+        try {
+            Table current = table;
+            int slot = current.findSlot(uuid);
+
+            if (current.isEmptySlot(slot)) {
+                return null;
+            }
+
+            if (!current.checkRecord(slot)) {
+                throw new IOException("Record of player " + uuid + " in " + path + " is corrupt");
+            }
+            return current.readRecord(slot);
+        } finally {
+            recordLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void saveBatch(List<PlayerSnapshot> snapshots) throws IOException {
+        synchronized (writeLock) {
+            for (PlayerSnapshot snapshot : snapshots) {
+                writeRecord(snapshot);
+            }
+        }
+        force();
+    }
+
+    @Override
+    public void update(Consumer<PlayerJournal.Visitor> changes) throws IOException {
+        synchronized (writeLock) {
+            replay(changes);
+        }
+        force();
+    }
+
+    /**
+     * Flush the mapped file to disk. This can take a while, so it runs outside the locks and loads keep being
+     * served from the page cache meanwhile. A rebuild flushes the file it swaps in itself.
+     */
+    private void force() {
+        table.force();
+    }
+
+    // Only the thread holding writeLock changes records, so it reads them without recordLock
+    private void replay(Consumer<PlayerJournal.Visitor> changes) throws IOException {
+        LinkedHashMap<UUID, PlayerSnapshot.Builder> builders = new LinkedHashMap<>();
+
+        changes.accept(new PlayerJournal.Visitor() {
+            @Override
+            public void guarantee(UUID playerUuid, UUID crateUuid, boolean guaranteed) {
+                builder(playerUuid).guarantee(crateUuid, guaranteed);
+            }
+
+            @Override
+            public void pity(UUID playerUuid, UUID crateUuid, String tierName, int pity) {
+                builder(playerUuid).pity(crateUuid, tierName, pity);
+            }
+
+            @Override
+            public void pulls(UUID playerUuid, UUID crateUuid, int pulls) {
+                builder(playerUuid).pulls(crateUuid, pulls);
+            }
+
+            @Override
+            public void rngCounter(UUID playerUuid, long rngCounter) {
+                builder(playerUuid).rngCounter(rngCounter);
+            }
+
+            private PlayerSnapshot.Builder builder(UUID playerUuid) {
+                return builders.computeIfAbsent(playerUuid, (u) -> {
+                    int slot = table.findSlot(u);
+                    return table.isEmptySlot(slot) || !table.checkRecord(slot) ? new PlayerSnapshot.Builder(u) : PlayerSnapshot.Builder.from(table.readRecord(slot));
+                });
+            }
+        });
+
+        for (PlayerSnapshot.Builder builder : builders.values()) {
+            writeRecord(builder.build());
+        }
+    }
+
+    private void writeRecord(PlayerSnapshot snapshot) throws IOException {
+        ensureRoom(snapshot);
+        recordLock.writeLock().lock();
+        try {
+            table.write(snapshot);
+        } finally {
+            recordLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Grow the file first if the snapshot would overfill the table or the dictionary
+     */
+    private void ensureRoom(PlayerSnapshot snapshot) throws IOException {
+        Table current = table;
+        boolean full = current.isEmptySlot(current.findSlot(snapshot.uuid())) && current.count + 1 > current.capacity * MAX_LOAD;
+        boolean known = true;
+
+        for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+            int crate = current.crateUuids.indexOf(crateState.crateUuid());
+
+            if (crate == -1 || !current.tierNames.get(crate).containsAll(Arrays.asList(crateState.tierNames()))) {
+                known = false;
+                break;
+            }
+        }
+
+        if (!full && known) {
+            return;
+        }
+        Set<UUID> crates = new HashSet<>(current.crateUuids);
+        int tiers = current.maxTiers;
+
+        for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+            int crate = current.crateUuids.indexOf(crateState.crateUuid());
+            Set<String> names = new HashSet<>(crate == -1 ? List.of() : current.tierNames.get(crate));
+
+            crates.add(crateState.crateUuid());
+            names.addAll(Arrays.asList(crateState.tierNames()));
+            tiers = Math.max(tiers, names.size());
+        }
+        int newMaxCrates = crates.size() > current.maxCrates ? Math.max(crates.size(), current.maxCrates * 2) : current.maxCrates;
+        int newMaxTiers = tiers > current.maxTiers ? Math.max(tiers, current.maxTiers * 2) : current.maxTiers;
+
+        if (!full && newMaxCrates == current.maxCrates && newMaxTiers == current.maxTiers) {
+            return;
+        }
+
+        if (full && current.capacity >= MAX_CAPACITY) {
+            throw new IOException("Mapped player data cannot hold more than " + (int) (MAX_CAPACITY * MAX_LOAD) + " players");
+        }
+
+        if (iterations > 0) {
+            awaitIterations();
+            ensureRoom(snapshot); // Another writer may have made room while the lock was released
+            return;
+        }
+        rebuild(full ? current.capacity * 2 : current.capacity, newMaxCrates, newMaxTiers);
+    }
+
+    private void awaitIterations() throws IOException {
+        try {
+            while (iterations > 0) {
+                writeLock.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for player data to be read");
+        }
+    }
+
+    /**
+     * Copy every record into a new file with the given dimensions and swap it in. Only saves are held up, loads
+     * read the old file until the swap. Callers hold writeLock and make sure no forEach is running.
+     */
+    private void rebuild(int newCapacity, int newMaxCrates, int newMaxTiers) throws IOException {
+        Table old = table;
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        Files.deleteIfExists(temp);
+        Table rebuilt = Table.create(temp, newCapacity, newMaxCrates, newMaxTiers);
+
+        // Keep dictionary order so slots stay stable
+        for (int crate = 0; crate < old.crateUuids.size(); crate++) {
+            rebuilt.crateSlot(old.crateUuids.get(crate), true);
+
+            for (String tierName : old.tierNames.get(crate)) {
+                rebuilt.tierSlot(crate, tierName, true);
+            }
+        }
+
+        // One record at a time, so a rebuild never holds every player on the heap
+        for (int slot = 0; slot < old.capacity; slot++) {
+            if (old.isEmptySlot(slot)) {
+                continue;
+            }
+
+            if (!old.checkRecord(slot)) {
+                Utils.getLogger().log(Level.WARNING, "[Wish] Dropping corrupt player record " + slot + " in " + path);
+                continue;
+            }
+            rebuilt.write(old.readRecord(slot));
+        }
+        rebuilt.force();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        table = rebuilt; // The mappings follow the file to its new name
+    }
+
+    private static long align(long value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    private static int maskWords(int crates) {
+        return (crates + 63) >>> 6;
+    }
+
+    private static int recordHeaderSize(int crates) {
+        return R_MASKS + 3 * maskWords(crates) * 8;
+    }
+
+    /**
+     * One mapped file. The header and each region of records are separate mappings, a record lives in region
+     * slot / regionSlots.
+     */
+    private static final class Table {
+        private final List<UUID> crateUuids = new ArrayList<>();
+        private final List<List<String>> tierNames = new ArrayList<>(); // Per crate slot
+        private final MappedByteBuffer header;
+        private final MappedByteBuffer[] regions;
+        private final int capacity;
+        private final int maxCrates;
+        private final int maxTiers;
+        private final int maskWords;
+        private final int recordSize;
+        private final int regionSlots;
+        private int count;
+
+        private Table(FileChannel channel, int capacity, int maxCrates, int maxTiers) throws IOException {
+            long headerSize = align(H_CRATES + maxCrates * (16L + maxTiers * TIER_NAME_BYTES), 4096);
+            long recordSize = align(recordHeaderSize(maxCrates) + maxCrates * 4L + (long) maxCrates * maxTiers * 2, 8);
+
+            if (headerSize > Integer.MAX_VALUE || recordSize > REGION_BYTES) {
+                throw new IOException("Mapped player data cannot hold " + maxCrates + " crates of " + maxTiers + " tiers");
+            }
+            this.capacity = capacity;
+            this.maxCrates = maxCrates;
+            this.maxTiers = maxTiers;
+            this.maskWords = maskWords(maxCrates);
+            this.recordSize = (int) recordSize;
+            this.regionSlots = (int) Math.min(capacity, REGION_BYTES / recordSize);
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+            this.regions = new MappedByteBuffer[(capacity + regionSlots - 1) / regionSlots];
+
+            for (int region = 0; region < regions.length; region++) {
+                long firstSlot = (long) region * regionSlots;
+                long slots = Math.min(regionSlots, capacity - firstSlot);
+
+                regions[region] = channel.map(FileChannel.MapMode.READ_WRITE, headerSize + firstSlot * recordSize, slots * recordSize);
+            }
+        }
+
+        private static Table create(Path file, int capacity, int maxCrates, int maxTiers) throws IOException {
+            Table table;
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                table = new Table(channel, capacity, maxCrates, maxTiers);
+            }
+            table.header.putInt(0, MAGIC);
+            table.header.putInt(4, VERSION);
+            table.header.putInt(H_CAPACITY, capacity);
+            table.header.putInt(H_MAX_CRATES, maxCrates);
+            table.header.putInt(H_MAX_TIERS, maxTiers);
+            return table;
+        }
+
+        private static Table open(Path file) throws IOException {
+            Table table;
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer fields = ByteBuffer.allocate(H_CRATES);
+
+                if (channel.read(fields, 0) != H_CRATES || fields.getInt(0) != MAGIC || fields.getInt(4) != VERSION) {
+                    throw new IOException(file + " is not a Wish mapped player data file of a known version");
+                }
+                table = new Table(channel, fields.getInt(H_CAPACITY), fields.getInt(H_MAX_CRATES), fields.getInt(H_MAX_TIERS));
+                table.count = fields.getInt(H_COUNT);
+            }
+
+            for (int slot = 0; slot < table.header.getInt(H_CRATE_COUNT); slot++) {
+                int offset = H_CRATES + slot * (16 + table.maxTiers * TIER_NAME_BYTES);
+                List<String> names = new ArrayList<>();
+
+                table.crateUuids.add(new UUID(table.header.getLong(offset), table.header.getLong(offset + 8)));
+                for (int tier = 0; tier < table.maxTiers; tier++) {
+                    int nameOffset = offset + 16 + tier * TIER_NAME_BYTES;
+                    int length = table.header.get(nameOffset) & 0xFF;
+
+                    if (length == 0) {
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    table.header.get(nameOffset + 1, bytes);
+                    names.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                table.tierNames.add(names);
+            }
+            return table;
+        }
+
+        private boolean checkRecord(int slot) {
+            return region(slot).getInt(recordOffset(slot) + R_CRC) == crc(slot);
+        }
+
+        private int crateSlot(UUID crateUuid, boolean add) {
+            int slot = crateUuids.indexOf(crateUuid);
+
+            if (slot != -1 || !add) {
+                return slot;
+            }
+            slot = crateUuids.size();
+            crateUuids.add(crateUuid);
+            tierNames.add(new ArrayList<>());
+            int offset = H_CRATES + slot * (16 + maxTiers * TIER_NAME_BYTES);
+
+            header.putLong(offset, crateUuid.getMostSignificantBits());
+            header.putLong(offset + 8, crateUuid.getLeastSignificantBits());
+            header.putInt(H_CRATE_COUNT, crateUuids.size());
+            return slot;
+        }
+
+        private int crc(int slot) {
+            MappedByteBuffer buffer = region(slot);
+            int offset = recordOffset(slot);
+            CRC32 crc = new CRC32();
+
+            crc.update(buffer.slice(offset, R_CRC));
+            crc.update(buffer.slice(offset + R_CRC + 4, recordSize - R_CRC - 4));
+            return (int) crc.getValue();
+        }
+
+        /**
+         * Find the slot holding a player, or the empty slot where it would go
+         */
+        private int findSlot(UUID uuid) {
+            long hash = uuid.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ uuid.getLeastSignificantBits();
+            int slot = (int) ((hash ^ (hash >>> 32)) & (capacity - 1));
+
+            while (!isEmptySlot(slot)) {
+                MappedByteBuffer buffer = region(slot);
+                int offset = recordOffset(slot);
+
+                if (buffer.getLong(offset) == uuid.getMostSignificantBits() && buffer.getLong(offset + 8) == uuid.getLeastSignificantBits()) {
+                    return slot;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            return slot;
+        }
+
+        private void force() {
+            header.force();
+
+            for (MappedByteBuffer region : regions) {
+                region.force();
+            }
+        }
+
+        private boolean isEmptySlot(int slot) {
+            MappedByteBuffer buffer = region(slot);
+            int offset = recordOffset(slot);
+            return buffer.getLong(offset) == 0 && buffer.getLong(offset + 8) == 0;
+        }
+
+        private void readRange(int fromSlot, int toSlot, List<PlayerSnapshot> snapshots) {
+            for (int slot = fromSlot; slot < toSlot; slot++) {
+                if (isEmptySlot(slot)) {
+                    continue;
+                }
+
+                if (!checkRecord(slot)) {
+                    Utils.getLogger().log(Level.WARNING, "[Wish] Skipping corrupt player record " + slot);
+                    continue;
+                }
+                snapshots.add(readRecord(slot));
+            }
+        }
+
+        private PlayerSnapshot readRecord(int slot) {
+            MappedByteBuffer buffer = region(slot);
+            int offset = recordOffset(slot);
+            List<PlayerSnapshot.CrateState> crateStates = new ArrayList<>();
+
+            for (int crate = 0; crate < crateUuids.size(); crate++) {
+                if (!getBit(buffer, offset, STATE_MASK, crate)) {
+                    continue;
+                }
+                List<String> names = tierNames.get(crate);
+                int[] pity = new int[names.size()];
+
+                for (int tier = 0; tier < pity.length; tier++) {
+                    pity[tier] = buffer.getChar(pityOffset(offset, crate, tier));
+                }
+                Boolean guarantee = getBit(buffer, offset, HAS_GUARANTEE_MASK, crate) ? getBit(buffer, offset, GUARANTEE_MASK, crate) : null;
+
+                crateStates.add(new PlayerSnapshot.CrateState(crateUuids.get(crate), names.toArray(new String[0]), pity,
+                        buffer.getInt(pullsOffset(offset, crate)), guarantee));
+            }
+            return new PlayerSnapshot(new UUID(buffer.getLong(offset), buffer.getLong(offset + 8)), buffer.getLong(offset + R_RNG_COUNTER), crateStates);
+        }
+
+        private int tierSlot(int crate, String tierName, boolean add) throws IOException {
+            List<String> names = tierNames.get(crate);
+            int slot = names.indexOf(tierName);
+
+            if (slot != -1 || !add) {
+                return slot;
+            }
+            byte[] bytes = tierName.getBytes(StandardCharsets.UTF_8);
+
+            if (bytes.length == 0 || bytes.length >= TIER_NAME_BYTES) {
+                throw new IOException("Tier name '" + tierName + "' cannot be stored in mapped player data");
+            }
+            slot = names.size();
+            names.add(tierName);
+            int offset = H_CRATES + crate * (16 + maxTiers * TIER_NAME_BYTES) + 16 + slot * TIER_NAME_BYTES;
+
+            header.put(offset, (byte) bytes.length);
+            header.put(offset + 1, bytes);
+            return slot;
+        }
+
+        /**
+         * Write a snapshot into its slot, the caller made sure the table and dictionary have room for it
+         */
+        private void write(PlayerSnapshot snapshot) throws IOException {
+            UUID uuid = snapshot.uuid();
+            int slot = findSlot(uuid);
+            MappedByteBuffer buffer = region(slot);
+            int offset = recordOffset(slot);
+
+            if (isEmptySlot(slot)) {
+                header.putInt(H_COUNT, ++count);
+            }
+            // Start from a clean record so crates or tiers removed from the snapshot do not linger
+            buffer.put(offset, new byte[recordSize]);
+            buffer.putLong(offset, uuid.getMostSignificantBits());
+            buffer.putLong(offset + 8, uuid.getLeastSignificantBits());
+            buffer.putLong(offset + R_RNG_COUNTER, snapshot.rngCounter());
+
+            for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+                int crate = crateSlot(crateState.crateUuid(), true);
+
+                setBit(buffer, offset, STATE_MASK, crate);
+                buffer.putInt(pullsOffset(offset, crate), crateState.pulls());
+                for (int i = 0; i < crateState.tierNames().length; i++) {
+                    int tier = tierSlot(crate, crateState.tierNames()[i], true);
+                    buffer.putChar(pityOffset(offset, crate, tier), (char) Math.min(crateState.pity()[i], Character.MAX_VALUE));
+                }
+
+                if (crateState.guarantee() != null) {
+                    setBit(buffer, offset, HAS_GUARANTEE_MASK, crate);
+
+                    if (crateState.guarantee()) {
+                        setBit(buffer, offset, GUARANTEE_MASK, crate);
+                    }
+                }
+            }
+            buffer.putInt(offset + R_CRC, crc(slot));
+        }
+
+        private boolean getBit(MappedByteBuffer buffer, int recordOffset, int mask, int crate) {
+            return (buffer.getLong(maskWordOffset(recordOffset, mask, crate)) & (1L << crate)) != 0;
+        }
+
+        private void setBit(MappedByteBuffer buffer, int recordOffset, int mask, int crate) {
+            int wordOffset = maskWordOffset(recordOffset, mask, crate);
+            buffer.putLong(wordOffset, buffer.getLong(wordOffset) | 1L << crate); // Shifts only use the low 6 bits
+        }
+
+        private int maskWordOffset(int recordOffset, int mask, int crate) {
+            return recordOffset + R_MASKS + (mask * maskWords + (crate >>> 6)) * 8;
+        }
+
+        private int pityOffset(int recordOffset, int crate, int tier) {
+            return pullsOffset(recordOffset, maxCrates) + (crate * maxTiers + tier) * 2;
+        }
+
+        private int pullsOffset(int recordOffset, int crate) {
+            return recordOffset + recordHeaderSize(maxCrates) + crate * 4;
+        }
+
+        private MappedByteBuffer region(int slot) {
+            return regions[slot / regionSlots];
+        }
+
+        private int recordOffset(int slot) {
+            return slot % regionSlots * recordSize;
+        }
+    }
+}
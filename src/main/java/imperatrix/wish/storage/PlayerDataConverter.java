@@ -0,0 +1,60 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.struct.PlayerSnapshot;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless converter between data.yml and the binary player data format, the direction follows the file
+ * extensions. Run it while the server is stopped.
+ * <p>
+ * Usage: {@code mvn -Pconvert compile exec:java -Dexec.args="plugins/Wish/data.yml plugins/Wish/data.bin"}
+ */
+public class PlayerDataConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: PlayerDataConverter <input.yml|input.bin> <output.bin|output.yml>");
+            return;
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+
+        if (!input.isFile()) {
+            System.out.println("Could not find " + input.getAbsolutePath());
+            return;
+        }
+        long start = System.nanoTime();
+        List<PlayerSnapshot> players = new ArrayList<>();
+
+        if (isYaml(input)) {
+            YamlPlayerStorage.readAll(YamlConfiguration.loadConfiguration(input), players::add);
+        } else {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(input))) {
+                PlayerStateCodec.read(in, players::add);
+            }
+        }
+
+        if (isYaml(output)) {
+            YamlConfiguration config = new YamlConfiguration();
+            players.forEach((snapshot) -> snapshot.writeTo(config));
+            Files.writeString(output.toPath(), config.saveToString(), StandardCharsets.UTF_8);
+        } else {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+                PlayerStateCodec.write(out, players);
+            }
+        }
+        System.out.printf("Converted %,d players in %.2fs, %,d bytes -> %,d bytes%n", players.size(),
+                (System.nanoTime() - start) / 1_000_000_000.0, input.length(), output.length());
+    }
+
+    private static boolean isYaml(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".yml") || name.endsWith(".yaml");
+    }
+}
@@ -0,0 +1,311 @@
+package imperatrix.wish.storage;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import imperatrix.wish.Wish;
+import imperatrix.wish.struct.PlayerSnapshot;
+import org.bukkit.Bukkit;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams player data to and from NDJSON files, one player per line, on a background thread. Only one batch of
+ * players is held in memory at a time, so the size of the dataset does not matter. Files ending in .gz are
+ * compressed.
+ * <p>
+ * A line looks like {@code {"uuid":"...","rng-counter":12,"crates":[{"uuid":"...","pulls":3,"guarantee":false,
+ * "pity":{"five-star":41,"four-star":2}}]}}, guarantee is left out for crates that are not 50/50 banners.
+ */
+public class PlayerDataTransfer {
+    private static final int BATCH_SIZE = 1000;
+    private static final int PROGRESS_INTERVAL = 50_000;
+
+    private final Wish plugin;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor((r) -> new Thread(r, "Wish-Transfer"));
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public PlayerDataTransfer(Wish plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Save every changed player, then write every stored player to a file. The file only appears once it is
+     * complete.
+     *
+     * @param file The file to write
+     * @param progress Receives the amount of players written so far every now and then, on the transfer thread
+     * @return Future completing with the amount of players exported
+     */
+    public CompletableFuture<Integer> exportTo(File file, IntConsumer progress) {
+        running.set(true);
+
+        return plugin.getPlayerCache().save().thenApplyAsync((v) -> {
+            try {
+                return export(file, progress);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).whenComplete((count, throwable) -> running.set(false));
+    }
+
+    /**
+     * Read players from a file and replace their stored state, batch by batch. Players opening a crate while
+     * their batch is applied are skipped.
+     *
+     * @param file The file to read
+     * @param progress Receives the amount of players read so far every now and then, on the transfer thread
+     * @return Future completing with the amount of players imported and skipped
+     */
+    public CompletableFuture<Result> importFrom(File file, IntConsumer progress) {
+        running.set(true);
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(file, progress);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).whenComplete((result, throwable) -> running.set(false));
+    }
+
+    /**
+     * Check whether an import or export is in progress
+     *
+     * @return True if a transfer is running
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Resolve a file name given in a command against the plugin folder
+     *
+     * @param name The file name, relative to the plugin folder
+     * @return File, or null if the name points outside the plugin folder
+     */
+    public File resolveFile(String name) {
+        Path dataFolder = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+        Path path = dataFolder.resolve(name).normalize();
+
+        return path.startsWith(dataFolder) && !path.equals(dataFolder) ? path.toFile() : null;
+    }
+
+    /**
+     * Stop accepting transfers, a running one is interrupted at its next batch
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private int export(File file, IntConsumer progress) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        int[] count = {0};
+
+        if (file.getParentFile() != null) {
+            Files.createDirectories(file.getParentFile().toPath());
+        }
+
+        try {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(openOutput(temp), StandardCharsets.UTF_8))) {
+                plugin.getPlayerCache().getStorage().forEach((snapshot) -> {
+                    try {
+                        out.write(toJson(snapshot));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    if (++count[0] % PROGRESS_INTERVAL == 0) {
+                        progress.accept(count[0]);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Only left behind if the export failed, a partial file is of no use
+            if (temp.exists() && !temp.delete()) {
+                plugin.getLogger().warning("[Wish] Could not delete " + temp);
+            }
+        }
+        return count[0];
+    }
+
+    private Result load(File file, IntConsumer progress) throws IOException {
+        int read = 0;
+        int imported = 0;
+        int lineNumber = 0;
+        List<PlayerSnapshot> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(openInput(file), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    batch.add(fromJson(line));
+                } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+                    throw new IOException("Invalid player on line " + lineNumber + ": " + e.getMessage(), e);
+                }
+
+                if (batch.size() == BATCH_SIZE) {
+                    imported += apply(batch, false);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+
+                if (++read % PROGRESS_INTERVAL == 0) {
+                    progress.accept(read);
+                }
+            }
+        }
+        imported += apply(batch, true);
+        return new Result(imported, read - imported);
+    }
+
+    /**
+     * Hand a batch to the player cache on the main thread and wait for it to be stored, so the next batch is
+     * only read once this one is gone. Storages keeping all players in one file only write it for the last batch.
+     */
+    private int apply(List<PlayerSnapshot> batch, boolean last) throws IOException {
+        try {
+            return Bukkit.getScheduler().callSyncMethod(plugin, () -> plugin.getPlayerCache().importBatch(batch, last)).get().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not import players", e.getCause());
+        }
+    }
+
+    private static OutputStream openOutput(File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        return file.getName().endsWith(".gz") || file.getName().endsWith(".gz.tmp") ? new GZIPOutputStream(out) : out;
+    }
+
+    private static InputStream openInput(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    private static String toJson(PlayerSnapshot snapshot) throws IOException {
+        StringWriter line = new StringWriter(256);
+        JsonWriter json = new JsonWriter(line);
+
+        json.beginObject();
+        json.name("uuid").value(snapshot.uuid().toString());
+        json.name("rng-counter").value(snapshot.rngCounter());
+        json.name("crates").beginArray();
+        for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+            json.beginObject();
+            json.name("uuid").value(crateState.crateUuid().toString());
+            json.name("pulls").value(crateState.pulls());
+            if (crateState.guarantee() != null) {
+                json.name("guarantee").value(crateState.guarantee());
+            }
+            json.name("pity").beginObject();
+            for (int i = 0; i < crateState.tierNames().length; i++) {
+                json.name(crateState.tierNames()[i]).value(crateState.pity()[i]);
+            }
+            json.endObject();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        return line.toString();
+    }
+
+    private static PlayerSnapshot fromJson(String line) throws IOException {
+        JsonReader json = new JsonReader(new StringReader(line));
+        UUID uuid = null;
+        long rngCounter = 0;
+        List<PlayerSnapshot.CrateState> crates = new ArrayList<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "uuid" -> uuid = UUID.fromString(json.nextString());
+                case "rng-counter" -> rngCounter = json.nextLong();
+                case "crates" -> {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        crates.add(readCrate(json));
+                    }
+                    json.endArray();
+                }
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (json.peek() != JsonToken.END_DOCUMENT) {
+            throw new IOException("More than one player on a line");
+        }
+
+        if (uuid == null) {
+            throw new IOException("Missing player uuid");
+        }
+        return new PlayerSnapshot(uuid, rngCounter, crates);
+    }
+
+    private static PlayerSnapshot.CrateState readCrate(JsonReader json) throws IOException {
+        UUID crateUuid = null;
+        int pulls = 0;
+        Boolean guarantee = null;
+        List<String> tierNames = new ArrayList<>();
+        List<Integer> pity = new ArrayList<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "uuid" -> crateUuid = UUID.fromString(json.nextString());
+                case "pulls" -> pulls = json.nextInt();
+                case "guarantee" -> guarantee = json.nextBoolean();
+                case "pity" -> {
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        tierNames.add(json.nextName());
+                        pity.add(json.nextInt());
+                    }
+                    json.endObject();
+                }
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (crateUuid == null) {
+            throw new IOException("Missing crate uuid");
+        }
+        return new PlayerSnapshot.CrateState(crateUuid, tierNames.toArray(new String[0]), pity.stream().mapToInt(Integer::intValue).toArray(),
+                pulls, guarantee);
+    }
+
+    /**
+     * Outcome of an import
+     *
+     * @param players Players whose state was replaced
+     * @param skipped Players left alone because they were opening a crate
+     */
+    public record Result(int players, int skipped) {
+    }
+}
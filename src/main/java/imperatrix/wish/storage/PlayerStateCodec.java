@@ -0,0 +1,202 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.struct.PlayerSnapshot;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Versioned binary encoding of player state.
+ * <p>
+ * Layout of version 1: the magic "WISH" and a varint version, a dictionary of every crate UUID (two longs each)
+ * and every tier name used in the file, then the players. A player is its UUID as two longs, a varint RNG
+ * counter and its crates. A crate is a varint dictionary index, varint pulls and varint (tier index, pity) pairs.
+ * The 50/50 guarantees of a player's crates follow as two bitsets, one telling which crates are 50/50 banners
+ * and one holding the guarantee of each.
+ */
+public final class PlayerStateCodec {
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x57495348; // "WISH"
+
+    private PlayerStateCodec() {
+    }
+
+    /**
+     * Decode players, handing each one over as soon as it has been read
+     *
+     * @param input The stream to read from, it is not closed
+     * @param consumer Receives each player
+     * @throws IOException If the stream could not be read or is not in a known format
+     */
+    public static void read(InputStream input, Consumer<PlayerSnapshot> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a Wish player data file");
+        }
+        int version = readVarInt(in);
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported player data version " + version);
+        }
+        UUID[] crateUuids = new UUID[readVarInt(in)];
+
+        for (int i = 0; i < crateUuids.length; i++) {
+            crateUuids[i] = new UUID(in.readLong(), in.readLong());
+        }
+        String[] tierNames = new String[readVarInt(in)];
+
+        for (int i = 0; i < tierNames.length; i++) {
+            tierNames[i] = in.readUTF();
+        }
+        int playerCount = readVarInt(in);
+
+        for (int p = 0; p < playerCount; p++) {
+            UUID uuid = new UUID(in.readLong(), in.readLong());
+            long rngCounter = readVarLong(in);
+            int crateCount = readVarInt(in);
+            UUID[] crates = new UUID[crateCount];
+            int[] pulls = new int[crateCount];
+            String[][] crateTierNames = new String[crateCount][];
+            int[][] pity = new int[crateCount][];
+
+            for (int c = 0; c < crateCount; c++) {
+                crates[c] = crateUuids[readVarInt(in)];
+                pulls[c] = readVarInt(in);
+                int tierCount = readVarInt(in);
+                crateTierNames[c] = new String[tierCount];
+                pity[c] = new int[tierCount];
+
+                for (int t = 0; t < tierCount; t++) {
+                    crateTierNames[c][t] = tierNames[readVarInt(in)];
+                    pity[c][t] = readVarInt(in);
+                }
+            }
+            BitSet hasGuarantee = readBitSet(in);
+            BitSet guarantees = readBitSet(in);
+            List<PlayerSnapshot.CrateState> crateStates = new ArrayList<>(crateCount);
+
+            for (int c = 0; c < crateCount; c++) {
+                crateStates.add(new PlayerSnapshot.CrateState(crates[c], crateTierNames[c], pity[c], pulls[c],
+                        hasGuarantee.get(c) ? guarantees.get(c) : null));
+            }
+            consumer.accept(new PlayerSnapshot(uuid, rngCounter, crateStates));
+        }
+    }
+
+    /**
+     * Encode players
+     *
+     * @param output The stream to write to, it is flushed but not closed
+     * @param snapshots The players to write
+     * @throws IOException If the stream could not be written
+     */
+    public static void write(OutputStream output, Collection<PlayerSnapshot> snapshots) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        LinkedHashMap<UUID, Integer> crateIndices = new LinkedHashMap<>();
+        LinkedHashMap<String, Integer> tierIndices = new LinkedHashMap<>();
+
+        for (PlayerSnapshot snapshot : snapshots) {
+            for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+                crateIndices.putIfAbsent(crateState.crateUuid(), crateIndices.size());
+
+                for (String tierName : crateState.tierNames()) {
+                    tierIndices.putIfAbsent(tierName, tierIndices.size());
+                }
+            }
+        }
+
+        out.writeInt(MAGIC);
+        writeVarInt(out, VERSION);
+        writeVarInt(out, crateIndices.size());
+        for (UUID crateUuid : crateIndices.keySet()) {
+            out.writeLong(crateUuid.getMostSignificantBits());
+            out.writeLong(crateUuid.getLeastSignificantBits());
+        }
+        writeVarInt(out, tierIndices.size());
+        for (String tierName : tierIndices.keySet()) {
+            out.writeUTF(tierName);
+        }
+        writeVarInt(out, snapshots.size());
+
+        for (PlayerSnapshot snapshot : snapshots) {
+            List<PlayerSnapshot.CrateState> crates = snapshot.crates();
+            BitSet hasGuarantee = new BitSet(crates.size());
+            BitSet guarantees = new BitSet(crates.size());
+
+            out.writeLong(snapshot.uuid().getMostSignificantBits());
+            out.writeLong(snapshot.uuid().getLeastSignificantBits());
+            writeVarLong(out, snapshot.rngCounter());
+            writeVarInt(out, crates.size());
+
+            for (int c = 0; c < crates.size(); c++) {
+                PlayerSnapshot.CrateState crateState = crates.get(c);
+
+                writeVarInt(out, crateIndices.get(crateState.crateUuid()));
+                writeVarInt(out, crateState.pulls());
+                writeVarInt(out, crateState.tierNames().length);
+                for (int t = 0; t < crateState.tierNames().length; t++) {
+                    writeVarInt(out, tierIndices.get(crateState.tierNames()[t]));
+                    writeVarInt(out, crateState.pity()[t]);
+                }
+
+                if (crateState.guarantee() != null) {
+                    hasGuarantee.set(c);
+                    guarantees.set(c, crateState.guarantee());
+                }
+            }
+            writeBitSet(out, hasGuarantee);
+            writeBitSet(out, guarantees);
+        }
+        out.flush();
+    }
+
+    private static BitSet readBitSet(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return BitSet.valueOf(bytes);
+    }
+
+    private static void writeBitSet(DataOutputStream out, BitSet bitSet) throws IOException {
+        byte[] bytes = bitSet.toByteArray();
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    // Unsigned LEB128, counters are never negative so small values take a single byte
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,75 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.file.PlayerJournal;
+import imperatrix.wish.struct.PlayerSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Where player data is persisted. Loads happen on the main thread, everything else may be called from the save
+ * thread, so implementations have to be thread safe.
+ */
+public interface PlayerStorage {
+
+    /**
+     * Release the storage, nothing may be called afterwards
+     *
+     * @throws IOException If the storage could not be closed cleanly
+     */
+    void close() throws IOException;
+
+    /**
+     * Iterate over every stored player
+     *
+     * @param consumer Receives a snapshot of each player
+     * @throws IOException If the storage could not be read
+     */
+    void forEach(Consumer<PlayerSnapshot> consumer) throws IOException;
+
+    /**
+     * Check whether no player is stored at all, used to decide whether to migrate data.yml
+     *
+     * @return True if the storage holds no players
+     * @throws IOException If the storage could not be read
+     */
+    boolean isEmpty() throws IOException;
+
+    /**
+     * Load the stored state of one player
+     *
+     * @param uuid The UUID of the player
+     * @return PlayerSnapshot, or null if nothing is stored for the player
+     * @throws IOException If the storage could not be read
+     */
+    PlayerSnapshot load(UUID uuid) throws IOException;
+
+    /**
+     * Store several players at once, replacing their previous state
+     *
+     * @param snapshots The players to store
+     * @throws IOException If the storage could not be written
+     */
+    void saveBatch(List<PlayerSnapshot> snapshots) throws IOException;
+
+    /**
+     * Store several players as part of a larger import. Storages that rewrite a whole file on every save may keep
+     * them in memory until the next saveBatch, the others store them right away.
+     *
+     * @param snapshots The players to store
+     * @throws IOException If the storage could not be written
+     */
+    default void stageBatch(List<PlayerSnapshot> snapshots) throws IOException {
+        saveBatch(snapshots);
+    }
+
+    /**
+     * Apply a set of single value changes and persist them together
+     *
+     * @param changes Feeds the changes to the given visitor
+     * @throws IOException If the storage could not be written
+     */
+    void update(Consumer<PlayerJournal.Visitor> changes) throws IOException;
+}
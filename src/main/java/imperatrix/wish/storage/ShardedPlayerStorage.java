@@ -0,0 +1,168 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.file.PlayerJournal;
+import imperatrix.wish.struct.PlayerSnapshot;
+import imperatrix.wish.util.Utils;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps every player in its own small file, data/ab/&lt;uuid&gt;.dat, sharded by the first two characters of the
+ * UUID and encoded with {@link PlayerStateCodec}. Players are only read when they are first needed and a save
+ * only rewrites the files of changed players, so neither depends on how many players have ever joined.
+ */
+public class ShardedPlayerStorage implements PlayerStorage {
+    private static final String SUFFIX = ".dat";
+
+    private final File directory;
+
+    public ShardedPlayerStorage(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void forEach(Consumer<PlayerSnapshot> consumer) throws IOException {
+        File[] shards = directory.listFiles(File::isDirectory);
+
+        if (shards == null) {
+            return;
+        }
+        Arrays.sort(shards);
+
+        for (File shard : shards) {
+            File[] files = shard.listFiles((dir, name) -> name.endsWith(SUFFIX));
+
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files);
+
+            for (File file : files) {
+                consumer.accept(read(file));
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        File[] shards = directory.listFiles(File::isDirectory);
+
+        if (shards == null) {
+            return true;
+        }
+
+        for (File shard : shards) {
+            String[] files = shard.list((dir, name) -> name.endsWith(SUFFIX));
+
+            if (files != null && files.length > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public PlayerSnapshot load(UUID uuid) throws IOException {
+        File file = getFile(uuid);
+        return file.isFile() ? read(file) : null;
+    }
+
+    @Override
+    public void saveBatch(List<PlayerSnapshot> snapshots) throws IOException {
+        IOException failure = null;
+
+        // Keep going on failure so one bad file does not cost every other player their save
+        for (PlayerSnapshot snapshot : snapshots) {
+            try {
+                write(snapshot);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void update(Consumer<PlayerJournal.Visitor> changes) throws IOException {
+        LinkedHashMap<UUID, PlayerSnapshot.Builder> builders = new LinkedHashMap<>();
+
+        try {
+            changes.accept(new PlayerJournal.Visitor() {
+                @Override
+                public void guarantee(UUID playerUuid, UUID crateUuid, boolean guaranteed) {
+                    builder(playerUuid).guarantee(crateUuid, guaranteed);
+                }
+
+                @Override
+                public void pity(UUID playerUuid, UUID crateUuid, String tierName, int pity) {
+                    builder(playerUuid).pity(crateUuid, tierName, pity);
+                }
+
+                @Override
+                public void pulls(UUID playerUuid, UUID crateUuid, int pulls) {
+                    builder(playerUuid).pulls(crateUuid, pulls);
+                }
+
+                @Override
+                public void rngCounter(UUID playerUuid, long rngCounter) {
+                    builder(playerUuid).rngCounter(rngCounter);
+                }
+
+                private PlayerSnapshot.Builder builder(UUID playerUuid) {
+                    return builders.computeIfAbsent(playerUuid, (u) -> {
+                        try {
+                            PlayerSnapshot snapshot = load(u);
+                            return snapshot == null ? new PlayerSnapshot.Builder(u) : PlayerSnapshot.Builder.from(snapshot);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<PlayerSnapshot> snapshots = new ArrayList<>();
+        builders.values().forEach((builder) -> snapshots.add(builder.build()));
+        saveBatch(snapshots);
+    }
+
+    private File getFile(UUID uuid) {
+        String name = uuid.toString();
+        return new File(new File(directory, name.substring(0, 2)), name + SUFFIX);
+    }
+
+    private PlayerSnapshot read(File file) throws IOException {
+        List<PlayerSnapshot> snapshots = new ArrayList<>(1);
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            PlayerStateCodec.read(in, snapshots::add);
+        }
+
+        if (snapshots.size() != 1) {
+            throw new IOException("Expected one player in " + file + ", found " + snapshots.size());
+        }
+        return snapshots.get(0);
+    }
+
+    private void write(PlayerSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+        PlayerStateCodec.write(bytes, List.of(snapshot));
+        Utils.writeAtomically(getFile(snapshot.uuid()).toPath(), bytes.toByteArray());
+    }
+}
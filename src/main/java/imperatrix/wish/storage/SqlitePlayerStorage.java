@@ -0,0 +1,324 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.file.PlayerJournal;
+import imperatrix.wish.struct.PlayerSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps players in an embedded SQLite database, data.db. Loading a player is a primary key lookup and saves only
+ * touch the rows of the changed players. Uses the SQLite driver bundled with the server.
+ * <p>
+ * Saves and reads go through separate connections. The database runs in WAL mode, so a load on the main thread reads
+ * the last committed state while the save thread is writing, instead of waiting for its whole batch to commit.
+ */
+public class SqlitePlayerStorage implements PlayerStorage {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS wish_players (player TEXT PRIMARY KEY, rng_counter INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS wish_crates (player TEXT NOT NULL, crate TEXT NOT NULL, pulls INTEGER NOT NULL, guarantee INTEGER, "
+                    + "PRIMARY KEY (player, crate))",
+            "CREATE TABLE IF NOT EXISTS wish_pity (player TEXT NOT NULL, crate TEXT NOT NULL, tier TEXT NOT NULL, pity INTEGER NOT NULL, "
+                    + "PRIMARY KEY (player, crate, tier))"
+    };
+    private static final String UPSERT_PLAYER = "INSERT INTO wish_players (player, rng_counter) VALUES (?, ?) "
+            + "ON CONFLICT (player) DO UPDATE SET rng_counter = excluded.rng_counter";
+    private static final String UPSERT_CRATE = "INSERT INTO wish_crates (player, crate, pulls, guarantee) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT (player, crate) DO UPDATE SET pulls = excluded.pulls, guarantee = excluded.guarantee";
+    private static final String UPSERT_PULLS = "INSERT INTO wish_crates (player, crate, pulls) VALUES (?, ?, ?) "
+            + "ON CONFLICT (player, crate) DO UPDATE SET pulls = excluded.pulls";
+    private static final String UPSERT_GUARANTEE = "INSERT INTO wish_crates (player, crate, pulls, guarantee) VALUES (?, ?, 0, ?) "
+            + "ON CONFLICT (player, crate) DO UPDATE SET guarantee = excluded.guarantee";
+    private static final String UPSERT_PITY = "INSERT INTO wish_pity (player, crate, tier, pity) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT (player, crate, tier) DO UPDATE SET pity = excluded.pity";
+    private static final String INSERT_MISSING_PLAYER = "INSERT OR IGNORE INTO wish_players (player, rng_counter) VALUES (?, 0)";
+    private static final String SELECT_PLAYER = "SELECT rng_counter FROM wish_players WHERE player = ?";
+    private static final String SELECT_CRATES = "SELECT crate, pulls, guarantee FROM wish_crates WHERE player = ?";
+    private static final String SELECT_PITY = "SELECT crate, tier, pity FROM wish_pity WHERE player = ?";
+    private static final String SELECT_ALL_PLAYERS = "SELECT player FROM wish_players";
+    private static final String SELECT_ANY_PLAYER = "SELECT 1 FROM wish_players LIMIT 1";
+
+    private final Connection connection; // Guarded by this, writes only
+    private final Connection readConnection; // Guarded by readLock
+    private final Object readLock = new Object();
+
+    public SqlitePlayerStorage(File databaseFile) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC"); // Make sure the bundled driver registered itself with DriverManager
+            this.connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            this.readConnection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+            try (Statement statement = readConnection.createStatement()) {
+                statement.execute("PRAGMA query_only=true");
+            }
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException("Could not open SQLite database " + databaseFile, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (readLock) {
+                readConnection.close();
+            }
+
+            synchronized (this) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not close SQLite database", e);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<PlayerSnapshot> consumer) throws IOException {
+        List<UUID> players = new ArrayList<>();
+
+        synchronized (readLock) {
+            try (Statement statement = readConnection.createStatement(); ResultSet resultSet = statement.executeQuery(SELECT_ALL_PLAYERS)) {
+                while (resultSet.next()) {
+                    players.add(UUID.fromString(resultSet.getString(1)));
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not list players", e);
+            }
+        }
+
+        for (UUID uuid : players) {
+            PlayerSnapshot snapshot = load(uuid);
+
+            if (snapshot != null) {
+                consumer.accept(snapshot);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() throws IOException {
+        synchronized (readLock) {
+            try (Statement statement = readConnection.createStatement(); ResultSet resultSet = statement.executeQuery(SELECT_ANY_PLAYER)) {
+                return !resultSet.next();
+            } catch (SQLException e) {
+                throw new IOException("Could not check for players", e);
+            }
+        }
+    }
+
+    @Override
+    public PlayerSnapshot load(UUID uuid) throws IOException {
+        synchronized (readLock) {
+            try {
+                // One read transaction, so all three queries see the same commit
+                readConnection.setAutoCommit(false);
+                return read(uuid);
+            } catch (SQLException e) {
+                throw new IOException("Could not load player " + uuid, e);
+            } finally {
+                try {
+                    readConnection.setAutoCommit(true); // Ends the read transaction
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+
+    private PlayerSnapshot read(UUID uuid) throws SQLException {
+        String player = uuid.toString();
+        long rngCounter;
+
+        try (PreparedStatement statement = readConnection.prepareStatement(SELECT_PLAYER)) {
+            statement.setString(1, player);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                rngCounter = resultSet.getLong(1);
+            }
+        }
+
+        // Pity rows grouped per crate, keeping the stored tier order
+        Map<String, List<Object[]>> pityByCrate = new HashMap<>();
+        try (PreparedStatement statement = readConnection.prepareStatement(SELECT_PITY)) {
+            statement.setString(1, player);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    pityByCrate.computeIfAbsent(resultSet.getString(1), (c) -> new ArrayList<>())
+                            .add(new Object[]{resultSet.getString(2), resultSet.getInt(3)});
+                }
+            }
+        }
+
+        List<PlayerSnapshot.CrateState> crateStates = new ArrayList<>();
+        try (PreparedStatement statement = readConnection.prepareStatement(SELECT_CRATES)) {
+            statement.setString(1, player);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    List<Object[]> pityRows = pityByCrate.getOrDefault(resultSet.getString(1), List.of());
+                    String[] tierNames = new String[pityRows.size()];
+                    int[] pity = new int[pityRows.size()];
+
+                    for (int i = 0; i < pityRows.size(); i++) {
+                        tierNames[i] = (String) pityRows.get(i)[0];
+                        pity[i] = (Integer) pityRows.get(i)[1];
+                    }
+                    int guaranteeValue = resultSet.getInt(3);
+                    Boolean guarantee = resultSet.wasNull() ? null : guaranteeValue != 0;
+
+                    crateStates.add(new PlayerSnapshot.CrateState(UUID.fromString(resultSet.getString(1)), tierNames, pity,
+                            resultSet.getInt(2), guarantee));
+                }
+            }
+        }
+        return new PlayerSnapshot(uuid, rngCounter, crateStates);
+    }
+
+    @Override
+    public synchronized void saveBatch(List<PlayerSnapshot> snapshots) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement players = connection.prepareStatement(UPSERT_PLAYER);
+                 PreparedStatement crates = connection.prepareStatement(UPSERT_CRATE);
+                 PreparedStatement pity = connection.prepareStatement(UPSERT_PITY)) {
+                for (PlayerSnapshot snapshot : snapshots) {
+                    String player = snapshot.uuid().toString();
+
+                    players.setString(1, player);
+                    players.setLong(2, snapshot.rngCounter());
+                    players.addBatch();
+
+                    for (PlayerSnapshot.CrateState crateState : snapshot.crates()) {
+                        String crate = crateState.crateUuid().toString();
+
+                        crates.setString(1, player);
+                        crates.setString(2, crate);
+                        crates.setInt(3, crateState.pulls());
+                        if (crateState.guarantee() == null) {
+                            crates.setNull(4, Types.INTEGER);
+                        } else {
+                            crates.setInt(4, crateState.guarantee() ? 1 : 0);
+                        }
+                        crates.addBatch();
+
+                        for (int i = 0; i < crateState.tierNames().length; i++) {
+                            pity.setString(1, player);
+                            pity.setString(2, crate);
+                            pity.setString(3, crateState.tierNames()[i]);
+                            pity.setInt(4, crateState.pity()[i]);
+                            pity.addBatch();
+                        }
+                    }
+                }
+                players.executeBatch();
+                crates.executeBatch();
+                pity.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("Could not save " + snapshots.size() + " players", e);
+        } finally {
+            resetAutoCommit();
+        }
+    }
+
+    @Override
+    public synchronized void update(Consumer<PlayerJournal.Visitor> changes) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement players = connection.prepareStatement(UPSERT_PLAYER);
+                 PreparedStatement pulls = connection.prepareStatement(UPSERT_PULLS);
+                 PreparedStatement guarantees = connection.prepareStatement(UPSERT_GUARANTEE);
+                 PreparedStatement pity = connection.prepareStatement(UPSERT_PITY);
+                 PreparedStatement missingPlayers = connection.prepareStatement(INSERT_MISSING_PLAYER)) {
+                // Every player with crate rows needs a player row, or load would not find them
+                changes.accept(new PlayerJournal.Visitor() {
+                    @Override
+                    public void guarantee(UUID playerUuid, UUID crateUuid, boolean guaranteed) {
+                        batch(guarantees, playerUuid.toString(), crateUuid.toString(), guaranteed ? 1 : 0);
+                        batch(missingPlayers, playerUuid.toString());
+                    }
+
+                    @Override
+                    public void pity(UUID playerUuid, UUID crateUuid, String tierName, int value) {
+                        batch(pity, playerUuid.toString(), crateUuid.toString(), tierName, value);
+                        batch(missingPlayers, playerUuid.toString());
+                    }
+
+                    @Override
+                    public void pulls(UUID playerUuid, UUID crateUuid, int value) {
+                        batch(pulls, playerUuid.toString(), crateUuid.toString(), value);
+                        batch(missingPlayers, playerUuid.toString());
+                    }
+
+                    @Override
+                    public void rngCounter(UUID playerUuid, long rngCounter) {
+                        batch(players, playerUuid.toString(), rngCounter);
+                    }
+                });
+                players.executeBatch();
+                missingPlayers.executeBatch();
+                pulls.executeBatch();
+                guarantees.executeBatch();
+                pity.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException | UncheckedSqlException e) {
+            rollback();
+            throw new IOException("Could not apply player data changes", e);
+        } finally {
+            resetAutoCommit();
+        }
+    }
+
+    private static void batch(PreparedStatement statement, Object... values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            statement.addBatch();
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    private void resetAutoCommit() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Carries a SQLException out of a visitor callback
+     */
+    private static class UncheckedSqlException extends RuntimeException {
+        private UncheckedSqlException(SQLException cause) {
+            super(cause);
+        }
+    }
+}
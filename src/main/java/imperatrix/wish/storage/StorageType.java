@@ -0,0 +1,5 @@
+package imperatrix.wish.storage;
+
+public enum StorageType {
+    BINARY, FILES, MAPPED, SQLITE, YAML
+}
@@ -0,0 +1,193 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.file.CustomFile;
+import imperatrix.wish.file.PlayerJournal;
+import imperatrix.wish.struct.PlayerSnapshot;
+import imperatrix.wish.util.Utils;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Keeps every player in data.yml. The whole file is parsed on startup and rewritten on every save, imports only
+ * write it once all players have been staged. Players are also kept as snapshots, so loads on the main thread
+ * never wait for the save thread to serialise the file.
+ */
+public class YamlPlayerStorage implements PlayerStorage {
+    private final Object fileLock = new Object(); // Guards fileConfiguration, which the save thread writes to
+    private final CustomFile dataFile;
+    private final FileConfiguration fileConfiguration;
+    private final Map<UUID, PlayerSnapshot> players = new ConcurrentHashMap<>(); // What fileConfiguration holds, read without the lock
+
+    public YamlPlayerStorage(CustomFile dataFile) {
+        this.dataFile = dataFile;
+        this.fileConfiguration = dataFile.getConfig();
+        readAll(fileConfiguration, (snapshot) -> players.put(snapshot.uuid(), snapshot));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Hand every stored player to a consumer, without any lock. Players saved meanwhile may be seen in either state.
+     */
+    @Override
+    public void forEach(Consumer<PlayerSnapshot> consumer) {
+        players.values().forEach(consumer);
+    }
+
+    /**
+     * Read every player of a data.yml configuration
+     *
+     * @param config The configuration to read
+     * @param consumer Receives each player
+     */
+    public static void readAll(ConfigurationSection config, Consumer<PlayerSnapshot> consumer) {
+        for (String key : config.getKeys(false)) {
+            readPlayer(config, key, consumer);
+        }
+    }
+
+    private static void readPlayer(ConfigurationSection config, String key, Consumer<PlayerSnapshot> consumer) {
+        ConfigurationSection dataSection = config.getConfigurationSection(key);
+
+        try {
+            if (dataSection != null) {
+                consumer.accept(read(UUID.fromString(key), dataSection));
+            }
+        } catch (IllegalArgumentException e) {
+            Utils.getLogger().log(Level.WARNING, "[Wish] Invalid player UUID string in data.yml: " + key);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return players.isEmpty();
+    }
+
+    @Override
+    public PlayerSnapshot load(UUID uuid) {
+        return players.get(uuid);
+    }
+
+    @Override
+    public void saveBatch(List<PlayerSnapshot> snapshots) throws IOException {
+        String data;
+
+        synchronized (fileLock) {
+            stageBatch(snapshots);
+            data = fileConfiguration.saveToString();
+        }
+        Utils.writeAtomically(dataFile.getFile().toPath(), data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void stageBatch(List<PlayerSnapshot> snapshots) {
+        synchronized (fileLock) {
+            for (PlayerSnapshot snapshot : snapshots) {
+                snapshot.writeTo(fileConfiguration);
+                republish(snapshot.uuid());
+            }
+        }
+    }
+
+    @Override
+    public void update(Consumer<PlayerJournal.Visitor> changes) throws IOException {
+        String data;
+
+        synchronized (fileLock) {
+            Set<UUID> changed = new HashSet<>();
+
+            changes.accept(new PlayerJournal.Visitor() {
+                @Override
+                public void guarantee(UUID playerUuid, UUID crateUuid, boolean guaranteed) {
+                    fileConfiguration.set(playerUuid + "." + crateUuid + ".LimitedBannerGuarantee", guaranteed);
+                    changed.add(playerUuid);
+                }
+
+                @Override
+                public void pity(UUID playerUuid, UUID crateUuid, String tierName, int pity) {
+                    fileConfiguration.set(playerUuid + "." + crateUuid + ".Pity-Map." + tierName, pity);
+                    changed.add(playerUuid);
+                }
+
+                @Override
+                public void pulls(UUID playerUuid, UUID crateUuid, int pulls) {
+                    fileConfiguration.set(playerUuid + "." + crateUuid + ".Pulls", pulls);
+                    changed.add(playerUuid);
+                }
+
+                @Override
+                public void rngCounter(UUID playerUuid, long rngCounter) {
+                    fileConfiguration.set(playerUuid + ".Rng-Counter", rngCounter);
+                    changed.add(playerUuid);
+                }
+            });
+
+            if (changed.isEmpty()) {
+                return;
+            }
+            changed.forEach(this::republish);
+            data = fileConfiguration.saveToString();
+        }
+        Utils.writeAtomically(dataFile.getFile().toPath(), data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Read a player back from fileConfiguration, writes merge into what was there, e.g. tiers no longer in the crate
+    private void republish(UUID uuid) {
+        ConfigurationSection dataSection = fileConfiguration.getConfigurationSection(uuid.toString());
+
+        if (dataSection != null) {
+            players.put(uuid, read(uuid, dataSection));
+        }
+    }
+
+    private static PlayerSnapshot read(UUID uuid, ConfigurationSection dataSection) {
+        List<PlayerSnapshot.CrateState> crateStates = new ArrayList<>();
+
+        // Iterate through each crate UUID stored for the player
+        for (String crateUuidString : dataSection.getKeys(false)) {
+            // Skip if this key is for our new combined 50/50 status map,
+            // as that was the old plan. New plan is per-crate.
+            // This check might not be strictly necessary with the new structure but is harmless.
+            if (crateUuidString.equals("LimitedBannerGuarantees") || crateUuidString.equals("Rng-Counter")) {
+                continue;
+            }
+
+            UUID crateUuid;
+            try {
+                crateUuid = UUID.fromString(crateUuidString);
+            } catch (IllegalArgumentException e) {
+                Utils.getLogger().warning("[Wish] Invalid Crate UUID string in data.yml for player " + uuid + ": " + crateUuidString);
+                continue;
+            }
+            ConfigurationSection crateDataSection = dataSection.getConfigurationSection(crateUuidString);
+
+            if (crateDataSection == null) continue;
+
+            ConfigurationSection pityMapSection = crateDataSection.getConfigurationSection("Pity-Map");
+            String[] tierNames = pityMapSection == null ? new String[0] : pityMapSection.getKeys(false).toArray(new String[0]);
+            int[] pity = new int[tierNames.length];
+
+            for (int i = 0; i < tierNames.length; i++) {
+                pity[i] = pityMapSection.getInt(tierNames[i], 0);
+            }
+            Boolean guarantee = crateDataSection.contains("LimitedBannerGuarantee") ? crateDataSection.getBoolean("LimitedBannerGuarantee") : null;
+
+            crateStates.add(new PlayerSnapshot.CrateState(crateUuid, tierNames, pity, crateDataSection.getInt("Pulls", 0), guarantee));
+        }
+        return new PlayerSnapshot(uuid, dataSection.getLong("Rng-Counter", 0), crateStates);
+    }
+}
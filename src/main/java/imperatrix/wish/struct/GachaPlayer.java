@@ -5,17 +5,20 @@ import imperatrix.wish.struct.reward.RewardTier;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
-import javax.annotation.Nonnull;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.UUID;
 
 public class GachaPlayer {
-    private final HashMap<Crate, HashMap<RewardTier, Integer>> pityMap = new HashMap<>();
-    private final HashMap<Crate, Integer> pullMap = new HashMap<>();
+    // Indexed by Crate#getIndex, and by RewardTier#getIndex for the inner pity arrays
+    private int[][] pity = new int[0][];
+    private int[] pulls = new int[0];
+    private final BitSet guarantees = new BitSet(); // Set if the next 5-star on a 50/50 banner is guaranteed featured
+    private final BitSet touchedCrates = new BitSet(); // Crates this player has any state for, only these get saved
     private final UUID uuid;
-
-    // New field for 50/50 system: Stores Crate UUID -> Boolean (true if next 5-star is guaranteed featured)
-    private final HashMap<UUID, Boolean> limitedBannerGuaranteeStatus = new HashMap<>();
+    private long rngCounter = 0;
+    private boolean dirty = false; // Changed since the last save
+    private ChangeListener changeListener = null;
 
     public GachaPlayer(UUID uuid) {
         this.uuid = uuid;
@@ -28,51 +31,61 @@ public class GachaPlayer {
      * @return Available pull count as int
      */
     public int getAvailablePulls(Crate crate) {
-        return pullMap.getOrDefault(crate, 0);
+        int crateIndex = crate.getIndex();
+        return crateIndex >= 0 && crateIndex < pulls.length ? pulls[crateIndex] : 0;
     }
 
     /**
      * Retrieve the current pity level
      *
-     * @param crate The Crate to fetch the pity map of
+     * @param crate The Crate the reward tier belongs to
      * @param rewardTier The RewardTier to get the pity of
      * @return Current pity level as int, defaults to 0
      */
     public int getPity(Crate crate, RewardTier rewardTier) {
-        return getPityMap(crate).getOrDefault(rewardTier, 0);
+        int crateIndex = crate.getIndex();
+        int tierIndex = rewardTier.getIndex();
+
+        if (crateIndex < 0 || crateIndex >= pity.length || pity[crateIndex] == null || tierIndex < 0 || tierIndex >= pity[crateIndex].length) {
+            return 0;
+        }
+        return pity[crateIndex][tierIndex];
     }
 
-    /**
-     * Retrieve the complete pity map
-     *
-     * @return HashMap with Crate as the key and specific pity map for the crate as the value
-     */
-    public HashMap<Crate, HashMap<RewardTier, Integer>> getPityMap() {
-        return pityMap;
+    public Player getPlayer() {
+        return Bukkit.getPlayer(uuid);
     }
 
     /**
-     * Retrieve a specific pity map
+     * Retrieve the counter the next random stream will be derived from
      *
-     * @param crate The crate to fetch the pity map of
-     * @return HashMap with RewardTier as the value and current pity level as the value
+     * @return Stream counter as long
      */
-    @Nonnull
-    public HashMap<RewardTier, Integer> getPityMap(Crate crate) {
-        // Ensure the crate entry exists in the pityMap
-        return pityMap.computeIfAbsent(crate, k -> new HashMap<>());
+    public long getRngCounter() {
+        return rngCounter;
     }
 
-    public Player getPlayer() {
-        return Bukkit.getPlayer(uuid);
+    public UUID getUuid() {
+        return uuid;
     }
 
-    public HashMap<Crate, Integer> getPullMap() {
-        return pullMap;
+    /**
+     * Check whether this player has any pity, pull or 50/50 state for a crate
+     *
+     * @param crate The Crate to check
+     * @return True if state has been set for the crate
+     */
+    public boolean hasState(Crate crate) {
+        return crate.getIndex() >= 0 && touchedCrates.get(crate.getIndex());
     }
 
-    public UUID getUuid() {
-        return uuid;
+    /**
+     * Check whether this player changed since it was last saved
+     *
+     * @return True if the player needs saving
+     */
+    public boolean isDirty() {
+        return dirty;
     }
 
     /**
@@ -82,14 +95,7 @@ public class GachaPlayer {
      * @param amt The amount to increase pity by
      */
     public void increasePity(Crate crate, int amt) {
-        for (RewardTier rewardTier : crate.getRewardTiers()) {
-            if (!rewardTier.isPityEnabled()) {
-                continue;
-            }
-            // Ensure pity doesn't exceed limit - 1, as limit itself means it's guaranteed.
-            // Pity is usually "pulls towards next guarantee".
-            setPity(crate, rewardTier, Math.min(getPity(crate, rewardTier) + amt, rewardTier.getPityLimit() > 0 ? rewardTier.getPityLimit() -1 : 0));
-        }
+        increasePity(crate, null, amt);
     }
 
     /**
@@ -101,10 +107,10 @@ public class GachaPlayer {
      */
     public void increasePity(Crate crate, RewardTier exceptionTier, int amt) {
         for (RewardTier rewardTier : crate.getRewardTiers()) {
-            if (!rewardTier.isPityEnabled() || rewardTier.equals(exceptionTier)) { // Use .equals() for object comparison
+            if (!rewardTier.isPityEnabled() || rewardTier.equals(exceptionTier)) {
                 continue;
             }
-            // Ensure pity doesn't exceed limit - 1
+            // Ensure pity doesn't exceed limit - 1, as limit itself means it's guaranteed.
             setPity(crate, rewardTier, Math.min(getPity(crate, rewardTier) + amt, rewardTier.getPityLimit() > 0 ? rewardTier.getPityLimit() - 1 : 0));
         }
     }
@@ -112,12 +118,11 @@ public class GachaPlayer {
     /**
      * Reset the current pity level to the default value (0)
      *
-     * @param crate The Crate containing the specific pity map
+     * @param crate The Crate the reward tier belongs to
      * @param rewardTier The RewardTier to reset the pity of
      */
     public void resetPity(Crate crate, RewardTier rewardTier) {
-        // Ensure the crate's pity map exists before trying to put into it
-        getPityMap(crate).put(rewardTier, 0);
+        setPity(crate, rewardTier, 0);
     }
 
     /**
@@ -127,22 +132,87 @@ public class GachaPlayer {
      * @param count The new pull balance
      */
     public void setAvailablePulls(Crate crate, int count) {
-        pullMap.put(crate, Math.max(0, count)); // Ensure pulls don't go negative
+        int crateIndex = touch(crate);
+
+        if (crateIndex >= pulls.length) {
+            pulls = Arrays.copyOf(pulls, crateIndex + 1);
+        }
+        int newCount = Math.max(0, count); // Ensure pulls don't go negative
+
+        if (pulls[crateIndex] != newCount) {
+            pulls[crateIndex] = newCount;
+            if (changeListener != null) {
+                changeListener.onPullsChanged(this, crate, newCount);
+            }
+        }
+    }
+
+    /**
+     * Set the listener told about every state change, used to journal changes between saves and to refresh
+     * placeholders
+     *
+     * @param changeListener The listener, or null to remove it
+     */
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Set the counter the next random stream will be derived from
+     *
+     * @param rngCounter The new stream counter
+     */
+    public void setRngCounter(long rngCounter) {
+        this.rngCounter = rngCounter;
+        this.dirty = true;
+
+        if (changeListener != null) {
+            changeListener.onRngCounterChanged(this, rngCounter);
+        }
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
     }
 
     /**
      * Set the current pity level
      *
-     * @param crate The Crate to fetch the pity map of
+     * @param crate The Crate the reward tier belongs to
      * @param rewardTier The RewardTier to set the pity of
      * @param pityLevel The new pity level
      */
     public void setPity(Crate crate, RewardTier rewardTier, int pityLevel) {
-        // Ensure the crate's pity map exists
-        getPityMap(crate).put(rewardTier, Math.max(0, pityLevel)); // Ensure pity doesn't go negative
+        int crateIndex = touch(crate);
+
+        if (crateIndex >= pity.length) {
+            pity = Arrays.copyOf(pity, crateIndex + 1);
+        }
+        if (pity[crateIndex] == null) {
+            pity[crateIndex] = new int[crate.getRewardTierCount()];
+        }
+        int newPity = Math.max(0, pityLevel); // Ensure pity doesn't go negative
+
+        if (pity[crateIndex][rewardTier.getIndex()] != newPity) {
+            pity[crateIndex][rewardTier.getIndex()] = newPity;
+            if (changeListener != null) {
+                changeListener.onPityChanged(this, crate, rewardTier, newPity);
+            }
+        }
+    }
+
+    private int touch(Crate crate) {
+        int crateIndex = crate.getIndex();
+
+        if (crateIndex < 0) {
+            throw new IllegalArgumentException("Crate '" + crate.getName() + "' was not loaded through the crate cache");
+        }
+        touchedCrates.set(crateIndex);
+        dirty = true;
+        return crateIndex;
     }
 
-    // --- New methods for 50/50 System ---
+    // --- 50/50 System ---
 
     /**
      * Checks if the next 5-star pull on a specific limited banner crate is guaranteed to be a featured item.
@@ -151,10 +221,10 @@ public class GachaPlayer {
      * @return True if the next 5-star is guaranteed featured, false otherwise (on 50/50 chance or if not applicable).
      */
     public boolean isNext5StarGuaranteedFeatured(Crate crate) {
-        if (crate == null || !crate.isLimited5050Banner()) { // Added check for crate type
+        if (crate == null || !crate.isLimited5050Banner() || crate.getIndex() < 0) {
             return false; // Not applicable for non-limited 50/50 banners
         }
-        return limitedBannerGuaranteeStatus.getOrDefault(crate.getUuid(), false);
+        return guarantees.get(crate.getIndex());
     }
 
     /**
@@ -165,10 +235,17 @@ public class GachaPlayer {
      * @param guaranteed True if the next 5-star should be a guaranteed featured item, false otherwise.
      */
     public void setNext5StarGuaranteedFeatured(Crate crate, boolean guaranteed) {
-        if (crate == null || !crate.isLimited5050Banner()) { // Added check for crate type
+        if (crate == null || !crate.isLimited5050Banner()) {
             return; // Not applicable
         }
-        limitedBannerGuaranteeStatus.put(crate.getUuid(), guaranteed);
+        int crateIndex = touch(crate);
+
+        if (guarantees.get(crateIndex) != guaranteed) {
+            guarantees.set(crateIndex, guaranteed);
+            if (changeListener != null) {
+                changeListener.onGuaranteeChanged(this, crate, guaranteed);
+            }
+        }
     }
 
     /**
@@ -179,30 +256,28 @@ public class GachaPlayer {
      * @param crate The limited banner Crate.
      */
     public void resetLimitedBannerGuarantee(Crate crate) {
-        if (crate == null || !crate.isLimited5050Banner()) { // Added check for crate type
-            return; // Not applicable
-        }
-        limitedBannerGuaranteeStatus.put(crate.getUuid(), false);
+        setNext5StarGuaranteedFeatured(crate, false);
     }
 
     /**
-     * Gets the raw map of limited banner guarantee statuses.
-     * Primarily for PlayerCache to save/load this data.
-     * @return The map of Crate UUIDs to their guarantee status.
+     * Told about every change to a player's persisted state, after it was applied
      */
-    public HashMap<UUID, Boolean> getLimitedBannerGuaranteeStatusMap() {
-        return limitedBannerGuaranteeStatus;
-    }
+    public interface ChangeListener {
+        void onGuaranteeChanged(GachaPlayer gachaPlayer, Crate crate, boolean guaranteed);
 
-    /**
-     * Sets the raw map of limited banner guarantee statuses.
-     * Primarily for PlayerCache to load this data.
-     * @param statusMap The map of Crate UUIDs to their guarantee status.
-     */
-    public void setLimitedBannerGuaranteeStatusMap(HashMap<UUID, Boolean> statusMap) {
-        if (statusMap != null) {
-            this.limitedBannerGuaranteeStatus.clear();
-            this.limitedBannerGuaranteeStatus.putAll(statusMap);
+        void onPityChanged(GachaPlayer gachaPlayer, Crate crate, RewardTier rewardTier, int pity);
+
+        void onPullsChanged(GachaPlayer gachaPlayer, Crate crate, int pulls);
+
+        void onRngCounterChanged(GachaPlayer gachaPlayer, long rngCounter);
+
+        /**
+         * Called instead of the single value changes when all of a player's state is replaced at once, e.g. by an
+         * import. The player object is dropped from the cache afterwards.
+         *
+         * @param gachaPlayer The player whose state was replaced
+         */
+        default void onReplaced(GachaPlayer gachaPlayer) {
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+package imperatrix.wish.struct;
+
+import imperatrix.wish.struct.crate.Crate;
+import imperatrix.wish.struct.reward.RewardTier;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable copy of a player's saved state. Taken on the main thread so it can be written from any thread.
+ *
+ * @param uuid The UUID of the player
+ * @param rngCounter The player's random stream counter
+ * @param crates State of every crate the player has state for
+ */
+public record PlayerSnapshot(UUID uuid, long rngCounter, List<CrateState> crates) {
+
+    /**
+     * Copy the current state of a player
+     *
+     * @param gachaPlayer The player to copy
+     * @param crates All loaded crates
+     * @return PlayerSnapshot
+     */
+    public static PlayerSnapshot of(GachaPlayer gachaPlayer, List<Crate> crates) {
+        List<CrateState> crateStates = new ArrayList<>();
+
+        for (Crate crate : crates) {
+            if (!gachaPlayer.hasState(crate)) {
+                continue;
+            }
+            List<String> tierNames = new ArrayList<>();
+            List<Integer> pity = new ArrayList<>();
+
+            for (RewardTier rewardTier : crate.getRewardTiers()) {
+                if (rewardTier.isPityEnabled()) {
+                    tierNames.add(rewardTier.getName());
+                    pity.add(gachaPlayer.getPity(crate, rewardTier));
+                }
+            }
+            Boolean guarantee = crate.isLimited5050Banner() ? gachaPlayer.isNext5StarGuaranteedFeatured(crate) : null;
+
+            crateStates.add(new CrateState(crate.getUuid(), tierNames.toArray(new String[0]), pity.stream().mapToInt(Integer::intValue).toArray(),
+                    gachaPlayer.getAvailablePulls(crate), guarantee));
+        }
+        return new PlayerSnapshot(gachaPlayer.getUuid(), gachaPlayer.getRngCounter(), crateStates);
+    }
+
+    /**
+     * Write this snapshot into a data.yml configuration
+     *
+     * @param config The configuration to write to
+     */
+    public void writeTo(ConfigurationSection config) {
+        String playerPath = uuid.toString();
+
+        config.set(playerPath + ".Rng-Counter", rngCounter);
+
+        for (CrateState crateState : crates) {
+            String cratePath = playerPath + "." + crateState.crateUuid();
+
+            for (int i = 0; i < crateState.tierNames().length; i++) {
+                config.set(cratePath + ".Pity-Map." + crateState.tierNames()[i], crateState.pity()[i]);
+            }
+            config.set(cratePath + ".Pulls", crateState.pulls());
+
+            if (crateState.guarantee() != null) {
+                config.set(cratePath + ".LimitedBannerGuarantee", crateState.guarantee());
+            }
+        }
+    }
+
+    /**
+     * Saved state of one crate
+     *
+     * @param crateUuid The UUID of the crate
+     * @param tierNames Names of the pity enabled tiers
+     * @param pity Pity of each tier in tierNames
+     * @param pulls Available pulls
+     * @param guarantee 50/50 guarantee, null if the crate is not a 50/50 banner
+     */
+    public record CrateState(UUID crateUuid, String[] tierNames, int[] pity, int pulls, Boolean guarantee) {
+    }
+
+    /**
+     * Builds a snapshot out of single value changes, used by storages applying bulk updates
+     */
+    public static class Builder {
+        private final UUID uuid;
+        private final LinkedHashMap<UUID, CrateBuilder> crates = new LinkedHashMap<>();
+        private long rngCounter = 0;
+
+        public Builder(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        /**
+         * Start from an existing snapshot
+         *
+         * @param snapshot The snapshot to copy
+         * @return Builder holding the snapshot's state
+         */
+        public static Builder from(PlayerSnapshot snapshot) {
+            Builder builder = new Builder(snapshot.uuid()).rngCounter(snapshot.rngCounter());
+
+            for (CrateState crateState : snapshot.crates()) {
+                builder.pulls(crateState.crateUuid(), crateState.pulls());
+
+                for (int i = 0; i < crateState.tierNames().length; i++) {
+                    builder.pity(crateState.crateUuid(), crateState.tierNames()[i], crateState.pity()[i]);
+                }
+                if (crateState.guarantee() != null) {
+                    builder.guarantee(crateState.crateUuid(), crateState.guarantee());
+                }
+            }
+            return builder;
+        }
+
+        public PlayerSnapshot build() {
+            List<CrateState> crateStates = new ArrayList<>();
+
+            for (Map.Entry<UUID, CrateBuilder> entry : crates.entrySet()) {
+                CrateBuilder crate = entry.getValue();
+                crateStates.add(new CrateState(entry.getKey(), crate.pity.keySet().toArray(new String[0]),
+                        crate.pity.values().stream().mapToInt(Integer::intValue).toArray(), crate.pulls, crate.guarantee));
+            }
+            return new PlayerSnapshot(uuid, rngCounter, crateStates);
+        }
+
+        public Builder guarantee(UUID crateUuid, boolean guarantee) {
+            crate(crateUuid).guarantee = guarantee;
+            return this;
+        }
+
+        public Builder pity(UUID crateUuid, String tierName, int pity) {
+            crate(crateUuid).pity.put(tierName, pity);
+            return this;
+        }
+
+        public Builder pulls(UUID crateUuid, int pulls) {
+            crate(crateUuid).pulls = pulls;
+            return this;
+        }
+
+        public Builder rngCounter(long rngCounter) {
+            this.rngCounter = rngCounter;
+            return this;
+        }
+
+        private CrateBuilder crate(UUID crateUuid) {
+            return crates.computeIfAbsent(crateUuid, (u) -> new CrateBuilder());
+        }
+
+        private static class CrateBuilder {
+            private final LinkedHashMap<String, Integer> pity = new LinkedHashMap<>();
+            private int pulls = 0;
+            private Boolean guarantee = null;
+        }
+    }
+}
@@ -6,8 +6,6 @@ import imperatrix.wish.Wish;
 import imperatrix.wish.struct.crate.Crate;
 import imperatrix.wish.struct.GachaPlayer;
 
-import java.util.Optional;
-
 public class WishPlaceholderExpansion extends PlaceholderExpansion {
 
     private final Wish plugin;
@@ -47,20 +45,8 @@ public class WishPlaceholderExpansion extends PlaceholderExpansion {
             return "";
         }
 
-        // Parse the placeholder for pulls left for a specific crate
-        if (identifier.startsWith("pulls_")) {
-            String crateName = identifier.substring("pulls_".length());
-            Optional<Crate> optionalCrate = plugin.getCrateCache().getCrate(crateName);
-
-            if (optionalCrate.isPresent()) {
-                Crate crate = optionalCrate.get();
-                return String.valueOf(getPullsForCrate(player, crate));
-            } else {
-                return "Invalid crate name";
-            }
-        }
-
-        return null; // Placeholder not found
+        // pulls_<crate>, pity_<crate>_<tier>, guarantee_<crate> and total_pulls, cached until the player's data changes
+        return plugin.getPlaceholderCache().getValue(player.getUniqueId(), identifier);
     }
 
     // Method to get the number of pulls left for a player in a specific crate
@@ -69,6 +55,3 @@ public class WishPlaceholderExpansion extends PlaceholderExpansion {
         return gachaPlayer.getAvailablePulls(crate);
     }
 }
-
-
-
@@ -1,26 +1,33 @@
 package imperatrix.wish.struct.crate;
 
 import imperatrix.wish.Wish;
+import imperatrix.wish.cache.GachaConfig;
 import imperatrix.wish.lang.Lang;
 import imperatrix.wish.menu.menus.CrateOpenMenu;
 import imperatrix.wish.menu.Menu;
 import imperatrix.wish.struct.GachaPlayer;
 import imperatrix.wish.struct.reward.Reward;
 import imperatrix.wish.struct.reward.RewardTier;
+import imperatrix.wish.util.AliasTable;
 import imperatrix.wish.util.MathUtil;
 import imperatrix.wish.util.ParticleUtil;
+import imperatrix.wish.util.Utils;
 import org.bukkit.*;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 
 public class Crate {
+    private static final int MAX_SOFT_PITY_TABLES = 4096;
+
     private final LinkedHashMap<RewardTier, Double> rewardProbabilityMap = new LinkedHashMap<>();
     private final String name;
+    private int index = -1; // Position in the crate cache, used to index player state
     private UUID uuid;
     private AnimationType animationType;
     private final Set<Location> crateLocations = new HashSet<>();
@@ -38,6 +45,22 @@ public class Crate {
     private String highestWeaponTierKeyName = "five-star-weapon"; // Default key name for weapon banner's high tier
     private RewardTier resolvedHighestWeaponTier;
 
+    // Compiled from rewardProbabilityMap at load, index i of the table maps to rewardTiers[i]
+    private RewardTier[] rewardTiers = new RewardTier[0];
+    private AliasTable[] tierTables; // One table per soft pity state, index 0 holds the base rates
+    private int[] pityTierIndices = new int[0]; // Pity enabled tiers, rarest first
+    private int[] pityCaps = new int[0]; // Highest pity level per tier, reaching it guarantees the tier
+
+    // Soft pity tiers, their ramp step is min(max(pity - offset, 0), maxStep) and the state index is the sum of step * stride
+    private int[] softPityTierIndices = new int[0];
+    private int[] softPityOffsets = new int[0];
+    private int[] softPityMaxSteps = new int[0];
+    private int[] softPityStrides = new int[0];
+
+    // Featured names resolved to reward indices of the featured tiers at load
+    private int[] featured5StarIndices = new int[0];
+    private int[] nonFeatured5StarIndices = new int[0];
+    private int[] featuredWeaponIndices = new int[0];
 
     public Crate(String name) {
         this.name = name;
@@ -48,90 +71,174 @@ public class Crate {
     }
 
     public RewardTier generateRewardTier(GachaPlayer gachaPlayer) {
-        List<RewardTier> tiersByPityPriority = new ArrayList<>(rewardProbabilityMap.keySet());
-        for (RewardTier rt : tiersByPityPriority) {
+        for (RewardTier rt : rewardTiers) {
             if (rt.isPityEnabled() && gachaPlayer.getPity(this, rt) >= rt.getPityLimit() - 1) {
                 return rt;
             }
         }
-        double randDouble = Math.random();
-        double cumulativeProbability = 0.0;
-        for (Map.Entry<RewardTier, Double> entry : rewardProbabilityMap.entrySet()) {
-            cumulativeProbability += entry.getValue();
-            if (randDouble <= cumulativeProbability) {
-                return entry.getKey();
-            }
+        if (tierTables == null) {
+            Utils.getLogger().log(Level.SEVERE, "[Wish] Reward probability map is empty for crate: " + this.name + ". Cannot generate a reward tier.");
+            return null;
         }
-        if (!rewardProbabilityMap.isEmpty()) {
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' reward tier probabilities might not sum to 1.0 or an issue occurred. Falling back to first configured tier.");
-            return rewardProbabilityMap.keySet().iterator().next();
+        int state = 0;
+        for (int k = 0; k < softPityTierIndices.length; k++) {
+            int step = gachaPlayer.getPity(this, rewardTiers[softPityTierIndices[k]]) - softPityOffsets[k];
+            state += Math.min(Math.max(step, 0), softPityMaxSteps[k]) * softPityStrides[k];
         }
-        Bukkit.getLogger().log(Level.SEVERE, "[Wish] Reward probability map is empty for crate: " + this.name + ". Cannot generate a reward tier.");
-        return null;
+        return rewardTiers[tierTables[state].sample(ThreadLocalRandom.current())];
     }
 
-    private Reward determineSpecial5StarReward(GachaPlayer gachaPlayer, RewardTier fiveStarTier) {
-        // (This is your existing 50/50 logic for character banners - kept as is)
-        if (fiveStarTier == null || !fiveStarTier.getName().equalsIgnoreCase(this.fiveStarTierKeyName) || featured5StarRewardNames.isEmpty()) {
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] Attempted 50/50 logic on non-designated tier or missing 50/50 configuration for crate: " + name);
-            return fiveStarTier != null ? fiveStarTier.generateReward() : null;
+    /**
+     * Roll a batch of pulls for a player. Pity and the 50/50 guarantee are read from the player once,
+     * carried through every pull and written back once the batch is done.
+     *
+     * @param gachaPlayer The player pulling
+     * @param pullCount The amount of pulls to roll
+     * @param random The random source to roll with, normally the session's stream
+     * @return PullResult holding the tier and reward index of every pull
+     */
+    public PullResult rollBatch(GachaPlayer gachaPlayer, int pullCount, RandomGenerator random) {
+        int[] pity = new int[rewardTiers.length];
+        PullResult pullResult = new PullResult(this, pullCount);
+
+        for (int tierIndex : pityTierIndices) {
+            pity[tierIndex] = gachaPlayer.getPity(this, rewardTiers[tierIndex]);
         }
-        Reward selectedReward;
-        Random random = new Random();
-        List<Reward> allRewardsInTier = new ArrayList<>(fiveStarTier.getRewards());
-        List<Reward> actualFeaturedRewards = allRewardsInTier.stream()
-                .filter(r -> featured5StarRewardNames.contains(r.getName()))
-                .collect(Collectors.toList());
+        pullResult.setNext5StarGuaranteed(gachaPlayer.isNext5StarGuaranteedFeatured(this));
 
-        if (actualFeaturedRewards.isEmpty()) {
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' (50/50 Banner) has Featured-5Star-Reward-Names defined, but no matching rewards found in its '" + fiveStarTierKeyName + "' tier. Giving a random reward from the tier.");
-            return fiveStarTier.generateReward();
+        roll(pity, pullCount, random, pullResult);
+
+        for (int tierIndex : pityTierIndices) {
+            gachaPlayer.setPity(this, rewardTiers[tierIndex], pity[tierIndex]);
         }
+        gachaPlayer.setNext5StarGuaranteedFeatured(this, pullResult.isNext5StarGuaranteed());
+        return pullResult;
+    }
 
-        if (gachaPlayer.isNext5StarGuaranteedFeatured(this)) {
-            selectedReward = actualFeaturedRewards.get(random.nextInt(actualFeaturedRewards.size()));
-            gachaPlayer.resetLimitedBannerGuarantee(this);
-        } else {
-            if (random.nextBoolean()) {
-                selectedReward = actualFeaturedRewards.get(random.nextInt(actualFeaturedRewards.size()));
-            } else {
-                List<Reward> nonFeaturedRewards = allRewardsInTier.stream()
-                        .filter(r -> !featured5StarRewardNames.contains(r.getName()))
-                        .collect(Collectors.toList());
-                if (!nonFeaturedRewards.isEmpty()) {
-                    selectedReward = nonFeaturedRewards.get(random.nextInt(nonFeaturedRewards.size()));
-                } else {
-                    selectedReward = actualFeaturedRewards.get(random.nextInt(actualFeaturedRewards.size()));
+    /**
+     * Encode the state rollBatch would start from for a player, pity per reward tier index followed by the 50/50
+     * guarantee, e.g. "0,4,73/false". CrateSimulator takes it back to replay the batch.
+     *
+     * @param gachaPlayer The player about to pull
+     * @return The encoded pity and guarantee
+     */
+    public String encodeRollState(GachaPlayer gachaPlayer) {
+        int[] pity = new int[rewardTiers.length];
+
+        for (int tierIndex : pityTierIndices) {
+            pity[tierIndex] = gachaPlayer.getPity(this, rewardTiers[tierIndex]);
+        }
+        StringJoiner state = new StringJoiner(",", "", "/" + gachaPlayer.isNext5StarGuaranteedFeatured(this));
+
+        for (int tierPity : pity) {
+            state.add(String.valueOf(tierPity));
+        }
+        return state.toString();
+    }
+
+    /**
+     * Roll pulls against a primitive pity state. This is the single roll engine behind every animation type.
+     *
+     * @param pity Pity level of every reward tier, indexed like getRewardTier(int). Updated in place
+     * @param pullCount The amount of pulls to roll
+     * @param random The random source to roll with
+     * @param pullResult The result to append pulls to, its 50/50 guarantee is read and updated in place
+     */
+    public void roll(int[] pity, int pullCount, RandomGenerator random, PullResult pullResult) {
+        if (tierTables == null) {
+            Utils.getLogger().log(Level.SEVERE, "[Wish] Reward probability map is empty for crate: " + this.name + ". Cannot generate a reward tier.");
+            return;
+        }
+
+        for (int pull = 0; pull < pullCount; pull++) {
+            int tierIndex = -1;
+            int flags = 0;
+
+            for (int pityTierIndex : pityTierIndices) {
+                if (pity[pityTierIndex] >= pityCaps[pityTierIndex]) {
+                    tierIndex = pityTierIndex;
+                    flags = PullResult.PITY;
+                    break;
                 }
-                gachaPlayer.setNext5StarGuaranteedFeatured(this, true);
+            }
+            if (tierIndex == -1) {
+                int state = 0;
+                for (int k = 0; k < softPityTierIndices.length; k++) {
+                    state += Math.min(Math.max(pity[softPityTierIndices[k]] - softPityOffsets[k], 0), softPityMaxSteps[k]) * softPityStrides[k];
+                }
+                tierIndex = tierTables[state].sample(random);
+            }
+            RewardTier rewardTier = rewardTiers[tierIndex];
+            int rewardIndex;
+
+            if (isGuaranteedFeaturedWeaponBanner && rewardTier == resolvedHighestWeaponTier) {
+                rewardIndex = determineGuaranteedFeaturedWeapon(rewardTier, random);
+
+                if (contains(featuredWeaponIndices, rewardIndex)) {
+                    flags |= PullResult.FEATURED;
+                }
+            } else if (isLimited5050Banner && rewardTier == resolvedFiveStarTier) {
+                boolean guaranteed = pullResult.isNext5StarGuaranteed();
+                rewardIndex = determineSpecial5StarReward(rewardTier, random, pullResult);
+
+                if (contains(featured5StarIndices, rewardIndex)) {
+                    flags |= guaranteed ? PullResult.FEATURED | PullResult.GUARANTEED : PullResult.FEATURED;
+                } else if (!guaranteed && pullResult.isNext5StarGuaranteed()) {
+                    flags |= PullResult.LOST_5050;
+                }
+            } else {
+                rewardIndex = rewardTier.generateRewardIndex(random);
+            }
+
+            if (rewardIndex == -1) {
+                continue; // Tier has no rewards to give
+            }
+            pullResult.add(tierIndex, rewardIndex, flags);
+
+            for (int pityTierIndex : pityTierIndices) {
+                pity[pityTierIndex] = pityTierIndex == tierIndex ? 0 : Math.min(pity[pityTierIndex] + 1, pityCaps[pityTierIndex]);
             }
         }
-        return selectedReward;
     }
 
-    // New method for Guaranteed Featured Weapon logic
-    private Reward determineGuaranteedFeaturedWeapon(RewardTier weaponTier) {
-        if (weaponTier == null || !weaponTier.getName().equalsIgnoreCase(this.highestWeaponTierKeyName) || featuredWeaponNames.isEmpty()) {
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] Attempted to get guaranteed featured weapon for crate '" + name + "' but configuration is missing (tier name mismatch or no featured weapon names). Tier found: " + (weaponTier != null ? weaponTier.getName() : "null") + ", Expected: " + this.highestWeaponTierKeyName);
-            return weaponTier != null ? weaponTier.generateReward() : null; // Fallback
+    private int determineSpecial5StarReward(RewardTier fiveStarTier, RandomGenerator random, PullResult pullResult) {
+        if (featured5StarIndices.length == 0) {
+            return fiveStarTier.generateRewardIndex(random); // Misconfigured, already reported at load
+        }
+
+        if (pullResult.isNext5StarGuaranteed()) {
+            pullResult.setNext5StarGuaranteed(false);
+            return featured5StarIndices[random.nextInt(featured5StarIndices.length)];
         }
 
-        List<Reward> allRewardsInTier = new ArrayList<>(weaponTier.getRewards());
-        List<Reward> actualFeaturedWeapons = allRewardsInTier.stream()
-                .filter(r -> featuredWeaponNames.contains(r.getName()))
-                .collect(Collectors.toList());
+        if (random.nextBoolean()) {
+            return featured5StarIndices[random.nextInt(featured5StarIndices.length)];
+        }
+        pullResult.setNext5StarGuaranteed(true);
+        if (nonFeatured5StarIndices.length > 0) {
+            return nonFeatured5StarIndices[random.nextInt(nonFeatured5StarIndices.length)];
+        }
+        return featured5StarIndices[random.nextInt(featured5StarIndices.length)];
+    }
 
-        if (actualFeaturedWeapons.isEmpty()) {
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' (Guaranteed Weapon Banner) has Featured-Weapon-Names defined, but no matching rewards found in its '" + highestWeaponTierKeyName + "' tier. Giving a random reward from the tier as fallback.");
-            return weaponTier.generateReward(); // Fallback
+    private int determineGuaranteedFeaturedWeapon(RewardTier weaponTier, RandomGenerator random) {
+        if (featuredWeaponIndices.length == 0) {
+            return weaponTier.generateRewardIndex(random); // Misconfigured, already reported at load
         }
 
         // If multiple featured weapons are listed (uncommon for this banner type), pick one randomly.
         // Usually, there's only one.
-        Random random = new Random();
-        return actualFeaturedWeapons.get(random.nextInt(actualFeaturedWeapons.size()));
+        return featuredWeaponIndices[random.nextInt(featuredWeaponIndices.length)];
     }
 
+    private static boolean contains(int[] indices, int index) {
+        for (int i : indices) {
+            if (i == index) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     public LinkedHashSet<Reward> getAllRewards() {
         LinkedHashSet<Reward> rewards = new LinkedHashSet<>();
@@ -151,10 +258,43 @@ public class Crate {
         return crateLocations;
     }
 
+    /**
+     * Retrieve the stable index of this crate, assigned when it is loaded into the crate cache
+     *
+     * @return Crate index, or -1 if the crate was not loaded through the cache
+     */
+    public int getIndex() {
+        return index;
+    }
+
     public String getName() {
         return name;
     }
 
+    /**
+     * Retrieve the index of the tier holding the featured rewards, the 50/50 tier or the featured weapon tier
+     *
+     * @return Tier index, or -1 if this crate is not a featured banner
+     */
+    public int getFeaturedTierIndex() {
+        RewardTier featuredTier = isLimited5050Banner ? resolvedFiveStarTier : isGuaranteedFeaturedWeaponBanner ? resolvedHighestWeaponTier : null;
+
+        for (int i = 0; i < rewardTiers.length; i++) {
+            if (rewardTiers[i] == featuredTier) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public RewardTier getRewardTier(int tierIndex) {
+        return rewardTiers[tierIndex];
+    }
+
+    public int getRewardTierCount() {
+        return rewardTiers.length;
+    }
+
     public Optional<RewardTier> getRewardTier(String tierNameLookup) {
         return getRewardTiers().stream().filter((r) -> r.getName().equalsIgnoreCase(tierNameLookup)).findFirst();
     }
@@ -198,7 +338,7 @@ public class Crate {
             this.animationType = AnimationType.valueOf(config.getString("Animation-Type", "INTERFACE").toUpperCase());
         } catch (IllegalArgumentException e) {
             this.animationType = AnimationType.INTERFACE;
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] Invalid animation type for '" + name + "'. Defaulting to INTERFACE.");
+            Utils.getLogger().log(Level.WARNING, "[Wish] Invalid animation type for '" + name + "'. Defaulting to INTERFACE.");
         }
 
         // Load 50/50 specific settings (for character/general limited banners)
@@ -217,7 +357,7 @@ public class Crate {
             for (String rewardTierNameKey : rewardTiersSection.getKeys(false)) {
                 ConfigurationSection rewardTierConfig = rewardTiersSection.getConfigurationSection(rewardTierNameKey);
                 if (rewardTierConfig == null) {
-                    Bukkit.getLogger().log(Level.WARNING, "[Wish] Missing config for reward tier '" + rewardTierNameKey + "' in crate '" + name + "'.");
+                    Utils.getLogger().log(Level.WARNING, "[Wish] Missing config for reward tier '" + rewardTierNameKey + "' in crate '" + name + "'.");
                     continue;
                 }
                 RewardTier rewardTier = new RewardTier(rewardTierNameKey);
@@ -234,24 +374,34 @@ public class Crate {
                 }
             }
             if (Math.abs(cumulativeChanceCheck - 1.0) > 0.001 && !rewardProbabilityMap.isEmpty()) {
-                Bukkit.getLogger().log(Level.WARNING, "[Wish] Probabilities for reward tiers in crate '" + name + "' do not sum to 100% (sum: " + String.format("%.2f", cumulativeChanceCheck * 100) + "%).");
+                Utils.getLogger().log(Level.WARNING, "[Wish] Probabilities for reward tiers in crate '" + name + "' do not sum to 100% (sum: " + String.format("%.2f", cumulativeChanceCheck * 100) + "%). Chances will be scaled to fit.");
             }
             sortProbabilityMap();
+            compileTierTable();
             // Resolve tiers again after sorting if not found by exact key name match
             if (this.resolvedFiveStarTier == null && this.isLimited5050Banner) {
                 getRewardTier(this.fiveStarTierKeyName).ifPresent(tier -> this.resolvedFiveStarTier = tier);
-                if (this.resolvedFiveStarTier == null) Bukkit.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' is 50/50 banner but couldn't resolve tier: '" + this.fiveStarTierKeyName + "'.");
+                if (this.resolvedFiveStarTier == null) Utils.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' is 50/50 banner but couldn't resolve tier: '" + this.fiveStarTierKeyName + "'.");
             }
             if (this.resolvedHighestWeaponTier == null && this.isGuaranteedFeaturedWeaponBanner) {
                 getRewardTier(this.highestWeaponTierKeyName).ifPresent(tier -> this.resolvedHighestWeaponTier = tier);
-                if (this.resolvedHighestWeaponTier == null) Bukkit.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' is Guaranteed Weapon Banner but couldn't resolve tier: '" + this.highestWeaponTierKeyName + "'.");
+                if (this.resolvedHighestWeaponTier == null) Utils.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' is Guaranteed Weapon Banner but couldn't resolve tier: '" + this.highestWeaponTierKeyName + "'.");
             }
+            compileFeaturedIndices();
         } else {
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] No reward tiers for crate `" + name + "`");
+            Utils.getLogger().log(Level.WARNING, "[Wish] No reward tiers for crate `" + name + "`");
         }
+    }
 
-        // Load crate locations (same as before)
-        for (String locationString : config.getStringList("Locations")) {
+    /**
+     * Load the crate locations. Worlds are resolved here, so unlike {@link #loadFrom(ConfigurationSection)} this
+     * has to run on the main thread.
+     *
+     * @param config The crate's config section
+     */
+    public void loadLocations(ConfigurationSection config) {
+        // There are no worlds to resolve the locations against without a server
+        for (String locationString : Utils.isHeadless() ? List.<String>of() : config.getStringList("Locations")) {
             String[] locationArgs = locationString.split(" ");
             if (locationArgs.length < 4) { /* ... error log ... */ continue; }
             World world = Bukkit.getWorld(locationArgs[0]);
@@ -266,81 +416,26 @@ public class Crate {
         Player player = gachaPlayer.getPlayer();
         if (player == null || !player.isOnline()) { /* ... error log ... */ return; }
 
-        // --- Pre-generate all rewards for INTERFACE and PHYSICAL types ---
-        List<RewardTier> obtainedRewardTiersList = new ArrayList<>();
-        List<Reward> obtainedRewardsList = new ArrayList<>();
-        if (animationType == AnimationType.INTERFACE || animationType == AnimationType.PHYSICAL) {
-            for (int i = 0; i < pullCount; i++) {
-                RewardTier actualHitTier = generateRewardTier(gachaPlayer);
-                if (actualHitTier == null) { /* ... error log ... */ continue; }
-
-                Reward finalRewardToGive;
-                boolean isTheDesignatedCharBannerHighTier = actualHitTier == this.resolvedFiveStarTier && this.resolvedFiveStarTier != null;
-                boolean isTheDesignatedWeaponBannerHighTier = actualHitTier == this.resolvedHighestWeaponTier && this.resolvedHighestWeaponTier != null;
-
-                if (this.isGuaranteedFeaturedWeaponBanner && isTheDesignatedWeaponBannerHighTier) {
-                    finalRewardToGive = determineGuaranteedFeaturedWeapon(actualHitTier);
-                } else if (this.isLimited5050Banner && isTheDesignatedCharBannerHighTier) {
-                    finalRewardToGive = determineSpecial5StarReward(gachaPlayer, actualHitTier);
-                } else {
-                    finalRewardToGive = actualHitTier.generateReward();
-                }
-
-                if (finalRewardToGive == null) { /* ... error log ... */ continue; }
-
-                obtainedRewardTiersList.add(actualHitTier);
-                obtainedRewardsList.add(finalRewardToGive);
+        if (animationType == AnimationType.INTERFACE && !(menu instanceof CrateOpenMenu)) { /* ... error log ... */ return; }
+        if (animationType == AnimationType.PHYSICAL && (crateSession.getCrateLocation() == null || crateSession.getCrateLocation().getWorld() == null)) { /* ... error log ... */ return; }
 
-                if (actualHitTier.isPityEnabled()) {
-                    gachaPlayer.resetPity(this, actualHitTier);
-                }
-                gachaPlayer.increasePity(this, actualHitTier, 1);
-            }
+        // Every animation type consumes the same batch, rolled once up front from the session's own stream
+        plugin.getRngProvider().openStream(gachaPlayer, crateSession);
+        if (GachaConfig.LOG_RNG_STREAMS) {
+            plugin.getLogger().info(player.getName() + " (" + gachaPlayer.getUuid() + ") opened " + pullCount + "x " + name
+                    + " on stream " + crateSession.getStreamId() + " from state " + encodeRollState(gachaPlayer));
         }
-        // --- End of Pre-generation ---
-
+        PullResult pullResult = rollBatch(gachaPlayer, pullCount, crateSession.getRandom());
 
         switch (animationType) {
             case NONE -> {
-                for (int i = 0; i < pullCount; i++) {
-                    RewardTier actualHitTier = generateRewardTier(gachaPlayer);
-                    if (actualHitTier == null) { /* ... error log ... */ continue; }
-                    Reward finalRewardToGive;
-                    boolean isTheDesignatedCharBannerHighTier = actualHitTier == this.resolvedFiveStarTier && this.resolvedFiveStarTier != null;
-                    boolean isTheDesignatedWeaponBannerHighTier = actualHitTier == this.resolvedHighestWeaponTier && this.resolvedHighestWeaponTier != null;
-
-                    if (this.isGuaranteedFeaturedWeaponBanner && isTheDesignatedWeaponBannerHighTier) {
-                        finalRewardToGive = determineGuaranteedFeaturedWeapon(actualHitTier);
-                    } else if (this.isLimited5050Banner && isTheDesignatedCharBannerHighTier) {
-                        finalRewardToGive = determineSpecial5StarReward(gachaPlayer, actualHitTier);
-                    } else {
-                        finalRewardToGive = actualHitTier.generateReward();
-                    }
-                    if (finalRewardToGive == null) { /* ... error log ... */ continue; }
-
-                    finalRewardToGive.execute(player);
-                    if (actualHitTier.isPityEnabled()) {
-                        gachaPlayer.resetPity(this, actualHitTier);
-                    }
-                    gachaPlayer.increasePity(this, actualHitTier, 1);
+                for (int i = 0; i < pullResult.size(); i++) {
+                    plugin.getDeliveryQueue().enqueue(player, this, pullResult.getReward(i));
                 }
             }
-            case INTERFACE -> {
-                if (!(menu instanceof CrateOpenMenu crateOpenMenu)) { /* ... error log ... */ return; }
-                // Uses pre-generated obtainedRewardTiersList and obtainedRewardsList
-                crateOpenMenu.open(gachaPlayer, crateSession, pullCount, obtainedRewardTiersList, obtainedRewardsList);
-            }
+            case INTERFACE -> ((CrateOpenMenu) menu).open(gachaPlayer, crateSession, pullResult);
             case PHYSICAL -> {
                 Location crateLocation = crateSession.getCrateLocation();
-                if (crateLocation == null || crateLocation.getWorld() == null) { /* ... error log ... */ return; }
-
-                // Uses pre-generated obtainedRewardTiersList and obtainedRewardsList
-                // Reconstruct RewardTierWithReward list for the animation logic
-                List<RewardTierWithReward> physicalPullResults = new ArrayList<>();
-                for (int i = 0; i < obtainedRewardsList.size(); i++) {
-                    physicalPullResults.add(new RewardTierWithReward(obtainedRewardTiersList.get(i), obtainedRewardsList.get(i)));
-                }
-
                 Location particleStartLoc = crateLocation.clone().add(0.5, 0.8, 0.5);
                 crateSession.setOpenPhase(CrateOpenPhase.OPENING);
                 setLocationInUse(crateLocation, true);
@@ -357,12 +452,12 @@ public class Crate {
                     int currentPullIndex = 0;
                     @Override
                     public void run() {
-                        if (currentPullIndex >= physicalPullResults.size() || player == null || !player.isOnline()) {
+                        if (currentPullIndex >= pullResult.size() || player == null || !player.isOnline()) {
                             new BukkitRunnable() { // Reward giver
                                 int rewardGiveIndex = 0;
                                 @Override
                                 public void run() {
-                                    if (rewardGiveIndex >= physicalPullResults.size() || player == null || !player.isOnline()) {
+                                    if (rewardGiveIndex >= pullResult.size() || player == null || !player.isOnline()) {
                                         setLocationInUse(crateLocation, false);
                                         crateSession.setOpenPhase(CrateOpenPhase.COMPLETE);
                                         if(crateSession.getPhysicalAnimationEndLocationMap() != null) crateSession.clearPhysicalAnimationData(); // Use the clear method
@@ -370,26 +465,28 @@ public class Crate {
                                         cancel();
                                         return;
                                     }
-                                    RewardTierWithReward result = physicalPullResults.get(rewardGiveIndex);
+                                    RewardTier rewardTier = pullResult.getRewardTier(rewardGiveIndex);
+                                    Reward reward = pullResult.getReward(rewardGiveIndex);
                                     Location endLoc = finalEndLocationMap.get(rewardGiveIndex);
                                     if (endLoc == null) endLoc = particleStartLoc.clone().add(0,1.5,0);
 
-                                    if (result.rewardTier() == null || result.reward() == null || endLoc.getWorld() == null) { /* ... error log ... */ rewardGiveIndex++; return; }
+                                    if (endLoc.getWorld() == null) { /* ... error log ... */ rewardGiveIndex++; return; }
 
-                                    Particle.DustOptions dustOptions = new Particle.DustOptions(result.rewardTier().getColor(), 1);
+                                    Particle.DustOptions dustOptions = new Particle.DustOptions(rewardTier.getColor(), 1);
                                     player.playSound(particleStartLoc, Sound.ENTITY_LIGHTNING_BOLT_THUNDER, 0.9f, 2.0f);
-                                    result.reward().execute(player);
+                                    plugin.getDeliveryQueue().enqueue(player, Crate.this, reward);
                                     ParticleUtil.spawnStraightLine(endLoc, particleStartLoc, Particle.REDSTONE, dustOptions, 1);
                                     rewardGiveIndex++;
                                 }
-                            }.runTaskTimer(plugin, 60L, Math.max(7L, (long)(20 * 0.7 / Math.max(1, physicalPullResults.size()))));
+                            }.runTaskTimer(plugin, 60L, Math.max(7L, (long)(20 * 0.7 / Math.max(1, pullResult.size()))));
                             cancel();
                             return;
                         }
-                        RewardTierWithReward result = physicalPullResults.get(currentPullIndex);
-                        Particle.DustOptions dustOptions = new Particle.DustOptions(result.rewardTier().getColor(), 1);
-                        double xOffset = new Random().nextDouble(0.4 + (currentPullIndex * .15)) * (new Random().nextBoolean() ? -1 : 1);
-                        double zOffset = new Random().nextDouble(0.4 + (currentPullIndex * .15)) * (new Random().nextBoolean() ? -1 : 1);
+                        Particle.DustOptions dustOptions = new Particle.DustOptions(pullResult.getRewardTier(currentPullIndex).getColor(), 1);
+                        // Cosmetic only, kept off the session stream so replays are not affected by the animation
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        double xOffset = random.nextDouble(0.4 + (currentPullIndex * .15)) * (random.nextBoolean() ? -1 : 1);
+                        double zOffset = random.nextDouble(0.4 + (currentPullIndex * .15)) * (random.nextBoolean() ? -1 : 1);
                         Location endLocation = particleStartLoc.clone().add(xOffset, 1.5, zOffset);
                         finalEndLocationMap.put(currentPullIndex, endLocation);
                         ParticleUtil.spawnCurvedLine(plugin, particleStartLoc, endLocation, Particle.REDSTONE, dustOptions, 1);
@@ -432,6 +529,10 @@ public class Crate {
                 && Objects.equals(crateLoc.getWorld(), location.getWorld()));
     }
 
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     public void setLocationInUse(Location location, boolean inUse) {
         this.inUse.put(location, inUse);
     }
@@ -445,5 +546,155 @@ public class Crate {
         }
     }
 
-    private record RewardTierWithReward(RewardTier rewardTier, Reward reward) {}
-}
\ No newline at end of file
+    private void compileFeaturedIndices() {
+        featured5StarIndices = new int[0];
+        nonFeatured5StarIndices = new int[0];
+        featuredWeaponIndices = new int[0];
+
+        if (isLimited5050Banner && resolvedFiveStarTier != null) {
+            if (featured5StarRewardNames.isEmpty()) {
+                Utils.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' is 50/50 banner but has no Featured-5Star-Reward-Names. Its '" + fiveStarTierKeyName + "' tier will give random rewards.");
+            } else {
+                featured5StarIndices = resolveRewardIndices(resolvedFiveStarTier, featured5StarRewardNames, "Featured-5Star-Reward-Names");
+                if (featured5StarIndices.length == 0) {
+                    Utils.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' (50/50 Banner) has Featured-5Star-Reward-Names defined, but no matching rewards found in its '" + fiveStarTierKeyName + "' tier. Its rewards will be given randomly.");
+                }
+            }
+            List<Integer> nonFeatured = new ArrayList<>();
+            for (int i = 0; i < resolvedFiveStarTier.getRewardCount(); i++) {
+                if (!contains(featured5StarIndices, i)) {
+                    nonFeatured.add(i);
+                }
+            }
+            nonFeatured5StarIndices = nonFeatured.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        if (isGuaranteedFeaturedWeaponBanner && resolvedHighestWeaponTier != null) {
+            if (featuredWeaponNames.isEmpty()) {
+                Utils.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' is Guaranteed Weapon Banner but has no Featured-Weapon-Names. Its '" + highestWeaponTierKeyName + "' tier will give random rewards.");
+            } else {
+                featuredWeaponIndices = resolveRewardIndices(resolvedHighestWeaponTier, featuredWeaponNames, "Featured-Weapon-Names");
+                if (featuredWeaponIndices.length == 0) {
+                    Utils.getLogger().log(Level.WARNING, "[Wish] Crate '" + name + "' (Guaranteed Weapon Banner) has Featured-Weapon-Names defined, but no matching rewards found in its '" + highestWeaponTierKeyName + "' tier. Its rewards will be given randomly.");
+                }
+            }
+        }
+    }
+
+    private int[] resolveRewardIndices(RewardTier rewardTier, List<String> rewardNames, String configKey) {
+        List<Integer> indices = new ArrayList<>();
+
+        for (String rewardName : rewardNames) {
+            boolean found = false;
+            for (int i = 0; i < rewardTier.getRewardCount(); i++) {
+                if (rewardTier.getReward(i).getName().equals(rewardName) && !indices.contains(i)) {
+                    indices.add(i);
+                    found = true;
+                }
+            }
+            if (!found) {
+                Utils.getLogger().log(Level.WARNING, "[Wish] " + configKey + " entry '" + rewardName + "' in crate '" + name + "' does not match any reward in tier '" + rewardTier.getName() + "'.");
+            }
+        }
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void compileTierTable() {
+        rewardTiers = rewardProbabilityMap.keySet().toArray(new RewardTier[0]);
+        pityCaps = new int[rewardTiers.length];
+        pityTierIndices = new int[0];
+        softPityTierIndices = new int[0];
+        softPityOffsets = new int[0];
+        softPityMaxSteps = new int[0];
+        softPityStrides = new int[0];
+        if (rewardTiers.length == 0) {
+            tierTables = null;
+            return;
+        }
+        double[] weights = new double[rewardTiers.length];
+        double totalWeight = 0.0;
+        List<Integer> pityTiers = new ArrayList<>();
+        List<Integer> softPityTiers = new ArrayList<>();
+        int stateCount = 1;
+        for (int i = 0; i < rewardTiers.length; i++) {
+            RewardTier rewardTier = rewardTiers[i];
+            rewardTier.setIndex(i);
+            weights[i] = Math.max(0.0, rewardProbabilityMap.get(rewardTier));
+            totalWeight += weights[i];
+            pityCaps[i] = Math.max(0, rewardTier.getPityLimit() - 1);
+            if (rewardTier.isPityEnabled()) {
+                pityTiers.add(i);
+            }
+            if (rewardTier.getSoftPityStart() <= 0) {
+                continue;
+            }
+            if (!rewardTier.isPityEnabled() || rewardTier.getSoftPityStart() > pityCaps[i]) {
+                Utils.getLogger().log(Level.WARNING, "[Wish] Soft pity of tier '" + rewardTier.getName() + "' in crate '" + name + "' needs Pity enabled and a Soft-Pity-Start below its Pity-Limit. Ignoring soft pity.");
+                continue;
+            }
+            // Steps 0 (not ramping yet) up to the last pull before hard pity
+            int steps = pityCaps[i] - rewardTier.getSoftPityStart() + 2;
+            if ((long) stateCount * steps > MAX_SOFT_PITY_TABLES) {
+                Utils.getLogger().log(Level.WARNING, "[Wish] Too many soft pity states in crate '" + name + "', ignoring soft pity of tier '" + rewardTier.getName() + "'. Shorten the soft pity ranges.");
+                continue;
+            }
+            softPityTiers.add(i);
+            stateCount *= steps;
+        }
+        pityTierIndices = pityTiers.stream().mapToInt(Integer::intValue).toArray();
+        softPityTierIndices = softPityTiers.stream().mapToInt(Integer::intValue).toArray();
+        softPityOffsets = new int[softPityTierIndices.length];
+        softPityMaxSteps = new int[softPityTierIndices.length];
+        softPityStrides = new int[softPityTierIndices.length];
+        int stride = 1;
+        for (int k = 0; k < softPityTierIndices.length; k++) {
+            int tierIndex = softPityTierIndices[k];
+            // The pull number Soft-Pity-Start is reached at pity Soft-Pity-Start - 1 and gets the first increase
+            softPityOffsets[k] = rewardTiers[tierIndex].getSoftPityStart() - 2;
+            softPityMaxSteps[k] = pityCaps[tierIndex] - rewardTiers[tierIndex].getSoftPityStart() + 1;
+            softPityStrides[k] = stride;
+            stride *= softPityMaxSteps[k] + 1;
+        }
+
+        double[] baseRates = new double[rewardTiers.length];
+        for (int i = 0; i < rewardTiers.length; i++) {
+            baseRates[i] = totalWeight > 0 ? weights[i] / totalWeight : 1.0 / rewardTiers.length;
+        }
+        tierTables = new AliasTable[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            tierTables[state] = new AliasTable(softPityRates(baseRates, state));
+        }
+    }
+
+    /**
+     * Work out the tier rates of a soft pity state. Ramping tiers get their increased rate and every other tier
+     * is scaled down so the rates still add up to 1.
+     */
+    private double[] softPityRates(double[] baseRates, int state) {
+        double[] rates = baseRates.clone();
+        double rampedBase = 0.0;
+        double rampedTotal = 0.0;
+
+        for (int k = 0; k < softPityTierIndices.length; k++) {
+            int tierIndex = softPityTierIndices[k];
+            int step = (state / softPityStrides[k]) % (softPityMaxSteps[k] + 1);
+
+            rates[tierIndex] = Math.min(1.0, baseRates[tierIndex] + step * rewardTiers[tierIndex].getSoftPityIncrease());
+            rampedBase += baseRates[tierIndex];
+            rampedTotal += rates[tierIndex];
+        }
+        boolean[] ramped = new boolean[rates.length];
+        for (int tierIndex : softPityTierIndices) {
+            ramped[tierIndex] = true;
+        }
+
+        for (int i = 0; i < rates.length; i++) {
+            if (ramped[i]) {
+                rates[i] = rampedTotal > 1.0 ? rates[i] / rampedTotal : rates[i];
+            } else {
+                rates[i] = rampedTotal >= 1.0 || rampedBase >= 1.0 ? 0.0 : rates[i] * (1.0 - rampedTotal) / (1.0 - rampedBase);
+            }
+        }
+        return rates;
+    }
+}
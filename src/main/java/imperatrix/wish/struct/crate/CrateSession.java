@@ -6,6 +6,7 @@ import org.bukkit.Location;
 import javax.annotation.Nullable;
 import java.util.Collection; // Added this import
 import java.util.HashMap;
+import java.util.SplittableRandom;
 import java.util.UUID; // Added this import
 
 public class CrateSession {
@@ -14,6 +15,8 @@ public class CrateSession {
     private Location crateLocation;
     private HashMap<Integer, Reward> rewards = new HashMap<>(); // Initialized to prevent NullPointerException if accessed before set
     private CrateOpenPhase openPhase = CrateOpenPhase.INACTIVE;
+    private SplittableRandom random;
+    private long streamId = -1;
 
     // New field for storing end locations during physical animations
     private HashMap<Integer, Location> physicalAnimationEndLocationMap;
@@ -44,6 +47,24 @@ public class CrateSession {
         return playerUuid;
     }
 
+    /**
+     * Gets the random stream used to roll this session's pulls.
+     * @return The stream, or null if no crate has been opened in this session yet.
+     */
+    @Nullable
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Gets the player's stream counter the current random stream was derived from.
+     * Together with the server seed and player UUID this is enough to replay the pulls.
+     * @return The stream counter, or -1 if no crate has been opened in this session yet.
+     */
+    public long getStreamId() {
+        return streamId;
+    }
+
     @Nullable
     public Reward getReward(int slotNumber) {
         return rewards.get(slotNumber);
@@ -65,6 +86,11 @@ public class CrateSession {
         this.openPhase = openPhase;
     }
 
+    public void setRandom(SplittableRandom random, long streamId) {
+        this.random = random;
+        this.streamId = streamId;
+    }
+
     public void setRewards(HashMap<Integer, Reward> rewards) {
         this.rewards = rewards;
     }
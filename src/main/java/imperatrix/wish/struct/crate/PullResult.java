@@ -0,0 +1,94 @@
+package imperatrix.wish.struct.crate;
+
+import imperatrix.wish.struct.reward.Reward;
+import imperatrix.wish.struct.reward.RewardTier;
+
+/**
+ * Compact outcome of a batch of pulls, stored as pairs of tier index and reward index
+ */
+public class PullResult {
+    public static final int PITY = 1; // The tier was forced by hard pity
+    public static final int FEATURED = 2; // The reward is a featured reward of a 50/50 or weapon banner
+    public static final int LOST_5050 = 4; // A 50/50 was rolled and lost
+    public static final int GUARANTEED = 8; // The featured reward was given because the previous 50/50 was lost
+
+    private final Crate crate;
+    private final int[] tierIndices;
+    private final int[] rewardIndices;
+    private final byte[] flags;
+    private int size = 0;
+    private boolean next5StarGuaranteed = false;
+
+    public PullResult(Crate crate, int capacity) {
+        this.crate = crate;
+        this.tierIndices = new int[capacity];
+        this.rewardIndices = new int[capacity];
+        this.flags = new byte[capacity];
+    }
+
+    /**
+     * Append a pull to the result
+     *
+     * @param tierIndex Index of the obtained tier in the crate
+     * @param rewardIndex Index of the obtained reward in the tier
+     * @param pullFlags Combination of PITY, FEATURED, LOST_5050 and GUARANTEED describing how the pull went
+     */
+    public void add(int tierIndex, int rewardIndex, int pullFlags) {
+        tierIndices[size] = tierIndex;
+        rewardIndices[size] = rewardIndex;
+        flags[size] = (byte) pullFlags;
+        size++;
+    }
+
+    /**
+     * Forget all pulls so the result can be reused for another batch
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public Crate getCrate() {
+        return crate;
+    }
+
+    public int getFlags(int pull) {
+        return flags[pull];
+    }
+
+    public Reward getReward(int pull) {
+        return getRewardTier(pull).getReward(rewardIndices[pull]);
+    }
+
+    public int getRewardIndex(int pull) {
+        return rewardIndices[pull];
+    }
+
+    public RewardTier getRewardTier(int pull) {
+        return crate.getRewardTier(tierIndices[pull]);
+    }
+
+    public int getTierIndex(int pull) {
+        return tierIndices[pull];
+    }
+
+    public boolean hasFlag(int pull, int flag) {
+        return (flags[pull] & flag) != 0;
+    }
+
+    /**
+     * Whether the next 5-star on a 50/50 banner is guaranteed to be featured once this batch is done
+     *
+     * @return True if the 50/50 was lost and not yet made up for
+     */
+    public boolean isNext5StarGuaranteed() {
+        return next5StarGuaranteed;
+    }
+
+    public void setNext5StarGuaranteed(boolean next5StarGuaranteed) {
+        this.next5StarGuaranteed = next5StarGuaranteed;
+    }
+
+    public int size() {
+        return size;
+    }
+}
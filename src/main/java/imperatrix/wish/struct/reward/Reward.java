@@ -1,9 +1,7 @@
 package imperatrix.wish.struct.reward;
 
-import imperatrix.wish.util.ItemBuilder;
 import imperatrix.wish.util.Utils;
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
@@ -15,7 +13,7 @@ public class Reward {
     private final String name;
     private final List<ItemStack> items = new ArrayList<>();
     private final List<String> commands = new ArrayList<>();
-    private ItemStack displayItem = new ItemBuilder(Material.AMETHYST_SHARD).setDisplayName("&dReward").build();
+    private ItemStack displayItem;
 
     public Reward(String name) {
         this.name = name;
@@ -43,12 +41,29 @@ public class Reward {
      * @param player The player to give the rewards to
      */
     public void execute(Player player) {
-        for (String cmd : commands) {
-            cmd = cmd.replace("%player%", player.getName());
-
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), cmd);
+        for (int i = 0; i < commands.size(); i++) {
+            dispatchCommand(i, player.getName());
         }
 
+        giveItems(player);
+    }
+
+    /**
+     * Run a single reward command as console
+     *
+     * @param commandIndex The index of the command to run
+     * @param playerName The name to replace %player% with
+     */
+    public void dispatchCommand(int commandIndex, String playerName) {
+        Bukkit.dispatchCommand(Bukkit.getConsoleSender(), commands.get(commandIndex).replace("%player%", playerName));
+    }
+
+    /**
+     * Give the reward items to a player, dropping them if their inventory is full
+     *
+     * @param player The player to give the items to
+     */
+    public void giveItems(Player player) {
         for (ItemStack item : items) {
             if (player.getInventory().firstEmpty() == -1) {
                 player.getWorld().dropItem(player.getLocation(), item);
@@ -59,8 +74,14 @@ public class Reward {
     }
 
     public void loadFrom(ConfigurationSection config) {
-        config.getStringList("Items").forEach((i) -> items.add(Utils.decodeItem(i)));
         commands.addAll(config.getStringList("Commands"));
+
+        // Items need a server to be built, the simulator only cares about which reward was pulled
+        if (Utils.isHeadless()) {
+            return;
+        }
+
+        config.getStringList("Items").forEach((i) -> items.add(Utils.decodeItem(i)));
         displayItem = Utils.decodeItem(config.getString("Display-Item", "AMETHYST_SHARD 1 name:&d" + name));
     }
 }
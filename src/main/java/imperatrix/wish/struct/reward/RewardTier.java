@@ -1,32 +1,40 @@
 package imperatrix.wish.struct.reward;
 
-import imperatrix.wish.util.ItemBuilder;
+import imperatrix.wish.util.AliasTable;
 import imperatrix.wish.util.Utils;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Supplier;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import org.bukkit.Bukkit;
+import java.util.random.RandomGenerator;
 import org.bukkit.Color;
-import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.inventory.ItemStack;
 
 public class RewardTier {
-    private HashMap<Reward, Double> rewardProbabilityMap = new HashMap<>();
+    private final LinkedHashMap<Reward, Double> rewardProbabilityMap = new LinkedHashMap<>();
+
+    // Compiled from rewardProbabilityMap at load, index i of the table maps to rewards[i]
+    private Reward[] rewards = new Reward[0];
+
+    private AliasTable rewardTable;
 
     private final String name;
 
+    private int index = -1;
+
     private int pityLimit = 0;
 
     private boolean pityEnabled = false;
 
-    private ItemStack displayItem = (new ItemBuilder(Material.WHITE_STAINED_GLASS_PANE)).setDisplayName("&7Reward Tier").build();
+    private int softPityStart = 0;
+
+    private double softPityIncrease = 0.0D;
+
+    private ItemStack displayItem;
 
     private Color color = Color.SILVER;
 
@@ -35,14 +43,14 @@ public class RewardTier {
     }
 
     public Reward generateReward() {
-        double randDouble = Math.random();
-        double count = 0.0D;
-        for (Map.Entry<Reward, Double> rewardProbability : this.rewardProbabilityMap.entrySet()) {
-            count += ((Double)rewardProbability.getValue()).doubleValue();
-            if (randDouble <= count)
-                return rewardProbability.getKey();
-        }
-        return (Reward)((Map.Entry)this.rewardProbabilityMap.entrySet().iterator().next()).getKey();
+        int rewardIndex = generateRewardIndex(ThreadLocalRandom.current());
+        return rewardIndex == -1 ? null : this.rewards[rewardIndex];
+    }
+
+    public int generateRewardIndex(RandomGenerator random) {
+        if (this.rewardTable == null)
+            return -1;
+        return this.rewardTable.sample(random);
     }
 
     public Color getColor() {
@@ -53,6 +61,10 @@ public class RewardTier {
         return this.displayItem;
     }
 
+    public int getIndex() {
+        return this.index;
+    }
+
     public String getName() {
         return this.name;
     }
@@ -61,6 +73,32 @@ public class RewardTier {
         return this.pityLimit;
     }
 
+    /**
+     * Retrieve the pull number from which the rate of this tier starts increasing
+     *
+     * @return Soft pity start, 0 if soft pity is disabled
+     */
+    public int getSoftPityStart() {
+        return this.softPityStart;
+    }
+
+    /**
+     * Retrieve the rate added for every pull from the soft pity start onwards
+     *
+     * @return Rate increase as a fraction
+     */
+    public double getSoftPityIncrease() {
+        return this.softPityIncrease;
+    }
+
+    public Reward getReward(int rewardIndex) {
+        return this.rewards[rewardIndex];
+    }
+
+    public int getRewardCount() {
+        return this.rewards.length;
+    }
+
     public Set<Reward> getRewards() {
         return this.rewardProbabilityMap.keySet();
     }
@@ -69,11 +107,18 @@ public class RewardTier {
         return this.pityEnabled;
     }
 
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     public void loadFrom(ConfigurationSection config) {
         ConfigurationSection rewards = config.getConfigurationSection("Rewards");
         this.pityEnabled = Boolean.parseBoolean(config.getString("Pity", "false"));
         this.pityLimit = config.getInt("Pity-Limit", 0);
-        this.displayItem = Utils.decodeItem(config.getString("Display-Item", "WHITE_STAINED_GLASS_PANE name:&7" + this.name));
+        this.softPityStart = config.getInt("Soft-Pity-Start", 0);
+        this.softPityIncrease = Math.max(0.0D, config.getDouble("Soft-Pity-Increase", 0.0D) / 100.0D);
+        if (!Utils.isHeadless())
+            this.displayItem = Utils.decodeItem(config.getString("Display-Item", "WHITE_STAINED_GLASS_PANE name:&7" + this.name));
         this.color = Color.fromRGB(config.getInt("Color.R", 255), config.getInt("Color.G", 255), config.getInt("Color.B", 255));
         if (rewards != null) {
             for (String rewardName : rewards.getKeys(false)) {
@@ -85,14 +130,29 @@ public class RewardTier {
                 this.rewardProbabilityMap.put(reward, Double.valueOf(chance));
             }
             sortProbabilityMap();
+            compileRewardTable();
         } else {
-            Bukkit.getLogger().log(Level.WARNING, "[Wish] No rewards specified for reward tier `" + this.name + "`");
+            Utils.getLogger().log(Level.WARNING, "[Wish] No rewards specified for reward tier `" + this.name + "`");
         }
     }
 
     private void sortProbabilityMap() {
-        List<Map.Entry<Reward, Double>> probabilityMapList = new LinkedList<>(this.rewardProbabilityMap.entrySet());
-        probabilityMapList.sort((Comparator)Map.Entry.comparingByValue());
-        this.rewardProbabilityMap = (HashMap<Reward, Double>)probabilityMapList.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (prev, next) -> next, HashMap::new));
+        List<Map.Entry<Reward, Double>> probabilityMapList = new ArrayList<>(this.rewardProbabilityMap.entrySet());
+        probabilityMapList.sort(Map.Entry.comparingByValue());
+        this.rewardProbabilityMap.clear();
+        for (Map.Entry<Reward, Double> entry : probabilityMapList)
+            this.rewardProbabilityMap.put(entry.getKey(), entry.getValue());
+    }
+
+    private void compileRewardTable() {
+        this.rewards = this.rewardProbabilityMap.keySet().toArray(new Reward[0]);
+        if (this.rewards.length == 0) {
+            this.rewardTable = null;
+            return;
+        }
+        double[] weights = new double[this.rewards.length];
+        for (int i = 0; i < this.rewards.length; i++)
+            weights[i] = Math.max(0.0D, this.rewardProbabilityMap.get(this.rewards[i]));
+        this.rewardTable = new AliasTable(weights);
     }
 }
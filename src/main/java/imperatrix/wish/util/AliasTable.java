@@ -0,0 +1,103 @@
+package imperatrix.wish.util;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Immutable weighted sampler built with Vose's alias method.
+ * Building the table is linear in the number of weights, drawing from it is constant time.
+ */
+public final class AliasTable {
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * Compile an alias table from a set of weights. Weights do not have to sum to 1, they are normalised.
+     * If every weight is 0, every index is treated as equally likely.
+     *
+     * @param weights The non-negative weight of each index
+     */
+    public AliasTable(double[] weights) {
+        int size = weights.length;
+
+        if (size == 0) {
+            throw new IllegalArgumentException("Cannot build an alias table without any weights");
+        }
+        double total = 0.0;
+
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Alias table weights must be finite and non-negative, got " + weight);
+            }
+
+            total += weight;
+        }
+        this.probability = new double[size];
+        this.alias = new int[size];
+        double[] scaled = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+
+        for (int i = 0; i < size; i++) {
+            scaled[i] = total > 0 ? weights[i] * size / total : 1.0;
+
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // Whatever is left over is only off by floating point error, these columns always keep their own index
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+    }
+
+    /**
+     * Draw a weighted index
+     *
+     * @param random The random source to draw with
+     * @return Index between 0 (inclusive) and size (exclusive)
+     */
+    public int sample(RandomGenerator random) {
+        int column = random.nextInt(probability.length);
+
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    /**
+     * Retrieve the amount of indices in the table
+     *
+     * @return Table size as int
+     */
+    public int size() {
+        return probability.length;
+    }
+}
@@ -0,0 +1,153 @@
+package imperatrix.wish.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to values, without boxing the keys or allocating on lookup.
+ * Open addressing with linear probing, removal shifts entries back instead of leaving tombstones. Null values
+ * are not supported.
+ *
+ * @param <V> The value type
+ */
+public final class LongHashMap<V> {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values; // A null value marks a free slot
+    private int mask;
+    private int size = 0;
+
+    public LongHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize How many entries the map should hold before it has to grow
+     */
+    public LongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Map a key to a value
+     *
+     * @param key The key
+     * @param value The value, not null
+     * @return The value previously mapped to the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LongHashMap does not support null values");
+        }
+        int slot = slot(key);
+
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (++size > keys.length * LOAD_FACTOR) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * Remove the mapping of a key
+     *
+     * @param key The key
+     * @return The value the key was mapped to, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slot(key);
+
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+            int slot = slot(oldKeys[i]);
+
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    // Move later entries of the probe run into the freed slot, so lookups never stop early at a hole
+    private void shiftBack(int freed) {
+        int slot = freed;
+
+        while (true) {
+            slot = (slot + 1) & mask;
+
+            if (values[slot] == null) {
+                break;
+            }
+            int home = slot(keys[slot]);
+
+            // Only move an entry whose home is not between the freed slot and its current slot
+            if (((slot - home) & mask) >= ((slot - freed) & mask)) {
+                keys[freed] = keys[slot];
+                values[freed] = values[slot];
+                freed = slot;
+            }
+        }
+        values[freed] = null;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads neighbouring block positions
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
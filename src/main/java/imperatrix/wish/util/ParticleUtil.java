@@ -9,6 +9,7 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class ParticleUtil {
 
@@ -22,14 +23,14 @@ public class ParticleUtil {
      * @param count The amount of particles to spawn per segment
      */
     public static void spawnCurvedLine(Wish plugin, Location start, Location end, Particle particle, int count) {
-        Random random = new Random();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         boolean negXOffset = random.nextBoolean();
         boolean negZOffset = random.nextBoolean();
         Location p0 = start.clone();
         Location p2 = end.clone();
-        double x = p0.getX() + (Math.random() * (negXOffset ? -1 : 1));
+        double x = p0.getX() + (random.nextDouble() * (negXOffset ? -1 : 1));
         double y = p0.getY() + (p2.getY() - p0.getY());
-        double z = p0.getZ() + (Math.random() * (negZOffset ? -1 : 1));
+        double z = p0.getZ() + (random.nextDouble() * (negZOffset ? -1 : 1));
         Location p1 = new Location(start.getWorld(), x, y, z);
         List<Location> curve = MathUtil.bezierCurve(100, p0, p1, p2);
 
@@ -62,14 +63,14 @@ public class ParticleUtil {
      * @param count The amount of particles to spawn per segment
      */
     public static <T>void spawnCurvedLine(Wish plugin, Location start, Location end, Particle particle, T data, int count) {
-        Random random = new Random();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         boolean negXOffset = random.nextBoolean();
         boolean negZOffset = random.nextBoolean();
         Location p0 = start.clone();
         Location p2 = end.clone();
-        double x = p0.getX() + (Math.random() * (negXOffset ? -1 : 1));
+        double x = p0.getX() + (random.nextDouble() * (negXOffset ? -1 : 1));
         double y = p0.getY() + (p2.getY() - p0.getY());
-        double z = p0.getZ() + (Math.random() * (negZOffset ? -1 : 1));
+        double z = p0.getZ() + (random.nextDouble() * (negZOffset ? -1 : 1));
         Location p1 = new Location(start.getWorld(), x, y, z);
         List<Location> curve = MathUtil.bezierCurve(21, p0, p1, p2);
 
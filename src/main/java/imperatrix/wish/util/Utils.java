@@ -1,19 +1,31 @@
 package imperatrix.wish.util;
 
 import net.md_5.bungee.api.ChatColor;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.inventory.ItemStack;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Utils {
+    private static final Pattern UNICODE_PATTERN = Pattern.compile("\\\\u\\+[a-fA-F0-9]{4}");
+    private static final Pattern HEX_COLOR_PATTERN = Pattern.compile("&#[a-fA-F0-9]{6}");
+
     public static ItemStack decodeItem(String str) {
         String[] args = str.split(" ");
         Material material = Material.ACACIA_BOAT;
@@ -67,23 +79,69 @@ public class Utils {
         return itemBuilder.build();
     }
 
+    /**
+     * Retrieve the server logger, or a plain logger when running without a server (e.g. the crate simulator)
+     *
+     * @return Logger
+     */
+    public static Logger getLogger() {
+        return isHeadless() ? Logger.getLogger("Wish") : Bukkit.getLogger();
+    }
+
+    /**
+     * Check whether the plugin code is running without a server, in which case items and worlds are unavailable
+     *
+     * @return True if there is no server
+     */
+    public static boolean isHeadless() {
+        return Bukkit.getServer() == null;
+    }
+
+    /**
+     * Replace a file without ever leaving it half written: the data goes to a temp file next to it, is forced to
+     * disk and then renamed over the target
+     *
+     * @param target The file to replace
+     * @param data The new contents
+     * @throws IOException If the file could not be written
+     */
+    public static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     public static String formatString(String str) {
-        Pattern unicode = Pattern.compile("\\\\u\\+[a-fA-F0-9]{4}");
         if (str == null)
             return null;
-        Matcher match = unicode.matcher(str);
-        while (match.find()) {
-            String code = str.substring(match.start(), match.end());
-            str = str.replace(code, Character.toString((char) Integer.parseInt(code.replace("\\u+", ""), 16)));
-            match = unicode.matcher(str);
+        // Most names and lore lines hold neither escape, skip the matchers for them
+        if (str.contains("\\u+")) {
+            Matcher match = UNICODE_PATTERN.matcher(str);
+            while (match.find()) {
+                String code = str.substring(match.start(), match.end());
+                str = str.replace(code, Character.toString((char) Integer.parseInt(code.replace("\\u+", ""), 16)));
+                match = UNICODE_PATTERN.matcher(str);
+            }
         }
-        Pattern pattern = Pattern.compile("&#[a-fA-F0-9]{6}");
-        match = pattern.matcher(str);
-        while (match.find()) {
-            String color = str.substring(match.start(), match.end());
-            str = str.replace(color, "" + ChatColor.of(color.replace("&", "")));
-            match = pattern.matcher(str);
+        if (str.contains("&#")) {
+            Matcher match = HEX_COLOR_PATTERN.matcher(str);
+            while (match.find()) {
+                String color = str.substring(match.start(), match.end());
+                str = str.replace(color, "" + ChatColor.of(color.replace("&", "")));
+                match = HEX_COLOR_PATTERN.matcher(str);
+            }
         }
         return ChatColor.translateAlternateColorCodes('&', str);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package imperatrix.wish.storage;
+
+import imperatrix.wish.struct.PlayerSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerStateCodecTest {
+    private static final UUID LIMITED = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID STANDARD = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID WEAPON = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    @Test
+    void roundTripsSeveralPlayersCratesAndTiers() throws IOException {
+        List<PlayerSnapshot> players = List.of(
+                new PlayerSnapshot(new UUID(1, 1), 42, List.of(
+                        crate(LIMITED, 10, true, "five-star", 73, "four-star", 4),
+                        crate(STANDARD, 0, null, "five-star", 12, "four-star", 9, "three-star", 0))),
+                new PlayerSnapshot(new UUID(2, 2), 0, List.of(
+                        crate(WEAPON, 3, null, "five-star", 1),
+                        crate(LIMITED, 1, false, "four-star", 2, "five-star", 5))),
+                new PlayerSnapshot(new UUID(3, 3), 7, List.of()));
+
+        assertSnapshotsEqual(players, roundTrip(players));
+    }
+
+    @Test
+    void keepsGuaranteeSetUnsetAndAbsent() throws IOException {
+        List<PlayerSnapshot> players = List.of(new PlayerSnapshot(new UUID(1, 1), 0, List.of(
+                crate(LIMITED, 0, true, "five-star", 0),
+                crate(STANDARD, 0, null, "five-star", 0),
+                crate(WEAPON, 0, false, "five-star", 0))));
+        List<PlayerSnapshot.CrateState> crates = roundTrip(players).get(0).crates();
+
+        assertEquals(Boolean.TRUE, crates.get(0).guarantee());
+        assertNull(crates.get(1).guarantee());
+        assertEquals(Boolean.FALSE, crates.get(2).guarantee());
+    }
+
+    @Test
+    void roundTripsVarintBoundaries() throws IOException {
+        for (int value : new int[]{0, 127, 128, 16383, 16384, Integer.MAX_VALUE}) {
+            List<PlayerSnapshot> players = List.of(new PlayerSnapshot(new UUID(1, 1), value, List.of(
+                    crate(LIMITED, value, null, "five-star", value))));
+
+            assertSnapshotsEqual(players, roundTrip(players));
+        }
+        List<PlayerSnapshot> players = List.of(new PlayerSnapshot(new UUID(1, 1), Long.MAX_VALUE, List.of()));
+        assertSnapshotsEqual(players, roundTrip(players));
+    }
+
+    @Test
+    void writesSmallValuesInOneByte() throws IOException {
+        int oneByte = encode(List.of(new PlayerSnapshot(new UUID(1, 1), 0, List.of(crate(LIMITED, 127, null, "five-star", 0))))).length;
+        int twoBytes = encode(List.of(new PlayerSnapshot(new UUID(1, 1), 0, List.of(crate(LIMITED, 128, null, "five-star", 0))))).length;
+
+        assertEquals(oneByte + 1, twoBytes);
+    }
+
+    @Test
+    void rejectsWrongMagic() throws IOException {
+        byte[] bytes = encode(List.of(new PlayerSnapshot(new UUID(1, 1), 0, List.of())));
+        bytes[0] = 'X';
+
+        IOException e = assertThrows(IOException.class, () -> decode(bytes));
+        assertEquals("Not a Wish player data file", e.getMessage());
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws IOException {
+        byte[] bytes = encode(List.of(new PlayerSnapshot(new UUID(1, 1), 0, List.of())));
+        bytes[4] = (byte) (PlayerStateCodec.VERSION + 1); // Versions below 128 take one varint byte after the magic
+
+        IOException e = assertThrows(IOException.class, () -> decode(bytes));
+        assertEquals("Unsupported player data version " + (PlayerStateCodec.VERSION + 1), e.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedInput() throws IOException {
+        byte[] bytes = encode(List.of(
+                new PlayerSnapshot(new UUID(1, 1), 300, List.of(crate(LIMITED, 200, true, "five-star", 89, "four-star", 9))),
+                new PlayerSnapshot(new UUID(2, 2), 1, List.of(crate(STANDARD, 1, null, "five-star", 1)))));
+
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> decode(truncated), "Truncated to " + length + " bytes");
+        }
+    }
+
+    private static PlayerSnapshot.CrateState crate(UUID crateUuid, int pulls, Boolean guarantee, Object... tierPity) {
+        String[] tierNames = new String[tierPity.length / 2];
+        int[] pity = new int[tierPity.length / 2];
+
+        for (int i = 0; i < tierNames.length; i++) {
+            tierNames[i] = (String) tierPity[i * 2];
+            pity[i] = (Integer) tierPity[i * 2 + 1];
+        }
+        return new PlayerSnapshot.CrateState(crateUuid, tierNames, pity, pulls, guarantee);
+    }
+
+    private static List<PlayerSnapshot> roundTrip(List<PlayerSnapshot> players) throws IOException {
+        return decode(encode(players));
+    }
+
+    private static byte[] encode(List<PlayerSnapshot> players) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlayerStateCodec.write(out, players);
+        return out.toByteArray();
+    }
+
+    private static List<PlayerSnapshot> decode(byte[] bytes) throws IOException {
+        List<PlayerSnapshot> players = new ArrayList<>();
+        PlayerStateCodec.read(new ByteArrayInputStream(bytes), players::add);
+        return players;
+    }
+
+    // CrateState holds arrays, so records are compared field by field
+    private static void assertSnapshotsEqual(List<PlayerSnapshot> expected, List<PlayerSnapshot> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int p = 0; p < expected.size(); p++) {
+            PlayerSnapshot expectedPlayer = expected.get(p);
+            PlayerSnapshot actualPlayer = actual.get(p);
+
+            assertEquals(expectedPlayer.uuid(), actualPlayer.uuid());
+            assertEquals(expectedPlayer.rngCounter(), actualPlayer.rngCounter());
+            assertEquals(expectedPlayer.crates().size(), actualPlayer.crates().size());
+
+            for (int c = 0; c < expectedPlayer.crates().size(); c++) {
+                PlayerSnapshot.CrateState expectedCrate = expectedPlayer.crates().get(c);
+                PlayerSnapshot.CrateState actualCrate = actualPlayer.crates().get(c);
+
+                assertEquals(expectedCrate.crateUuid(), actualCrate.crateUuid());
+                assertEquals(expectedCrate.pulls(), actualCrate.pulls());
+                assertEquals(expectedCrate.guarantee(), actualCrate.guarantee());
+                assertArrayEquals(expectedCrate.tierNames(), actualCrate.tierNames());
+                assertArrayEquals(expectedCrate.pity(), actualCrate.pity());
+            }
+        }
+    }
+}